@@ -0,0 +1,90 @@
+package com.cydeo.benchmarks;
+
+import com.cydeo.utilities.BrowserUtils;
+import com.cydeo.utilities.ConfigurationReader;
+import com.cydeo.utilities.Driver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Measures the overhead of our framework code on the hot paths, against the StubWebDriver (no browser, no network).
+The driver is the same decorated driver the tests get, so the command timing listener is included.
+
+Run with: mvn -Pjmh process-test-classes
+Every result is the average time of one call, and "-prof gc" adds the allocation rate (gc.alloc.rate.norm = bytes per call).
+The results are also written to target/jmh-result.json, to compare two commits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dbrowser=stub")
+public class FrameworkBenchmarks {
+
+    private List<WebElement> elements;
+    private WebElement dropdown;
+    private WebElement element;
+
+    @Setup
+    public void setup() {
+        StubWebDriver stub = new StubWebDriver();
+        Driver.registerBrowser("stub", () -> stub);
+
+        //the elements are found through the decorated driver, the same way the pages find them
+        WebDriver driver = Driver.getDriver();
+        elements = driver.findElements(By.tagName("option"));
+        element = elements.get(0);
+        dropdown = stub.dropdown();
+    }
+
+    @Benchmark
+    public WebDriver getDriver() {
+        return Driver.getDriver();
+    }
+
+    @Benchmark
+    public String getProperty() {
+        return ConfigurationReader.getProperty("browser");
+    }
+
+    @Benchmark
+    public List<String> getElementsText() {
+        return BrowserUtils.getElementsText(elements);
+    }
+
+    @Benchmark
+    public List<String> dropdownOptions() {
+        return BrowserUtils.dropdownOptions_as_STRING(dropdown);
+    }
+
+    @Benchmark
+    public void clickRadioButton() {
+        BrowserUtils.clickRadioButton(elements, "item10");
+    }
+
+    @Benchmark
+    public WebElement waitForVisibility() {
+        return BrowserUtils.waitForVisibility(element, 1);
+    }
+
+    @Benchmark
+    public WebElement waitForClickability() {
+        return BrowserUtils.waitForClickablility(element, 1);
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.cydeo.benchmarks;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+A WebDriver that answers from memory, without a browser, so the benchmarks measure only our framework code.
+
+The page is fixed: every locator finds the same list of elements (rows, radio buttons, or options of a dropdown).
+The batch scripts of BrowserUtils are answered from the elements that are passed to them.
+ */
+public class StubWebDriver implements WebDriver, JavascriptExecutor, TakesScreenshot {
+
+    private final List<WebElement> elements = new ArrayList<>();
+    private String currentUrl = "about:blank";
+
+    public StubWebDriver() {
+        this(20);
+    }
+
+    /**
+     * @param elementCount how many elements every locator finds
+     */
+    public StubWebDriver(int elementCount) {
+        for (int i = 0; i < elementCount; i++) {
+            elements.add(new StubElement("option", "Item " + i, Map.of("value", "item" + i)));
+        }
+    }
+
+    public List<WebElement> getElements() {
+        return elements;
+    }
+
+    /**
+     * @return a select element with the elements of this page as its options
+     */
+    public WebElement dropdown() {
+        StubElement select = new StubElement("select", "", Map.of());
+        select.children.addAll(elements);
+        return select;
+    }
+
+    @Override
+    public void get(String url) {
+        currentUrl = url;
+    }
+
+    @Override
+    public String getCurrentUrl() {
+        return currentUrl;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Stub page";
+    }
+
+    @Override
+    public List<WebElement> findElements(By by) {
+        return new ArrayList<>(elements);
+    }
+
+    @Override
+    public WebElement findElement(By by) {
+        if (elements.isEmpty()) {
+            throw new NoSuchElementException("Stub page has no elements: " + by);
+        }
+        return elements.get(0);
+    }
+
+    @Override
+    public String getPageSource() {
+        return "<html><body></body></html>";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void quit() {
+    }
+
+    @Override
+    public Set<String> getWindowHandles() {
+        return Set.of("stub");
+    }
+
+    @Override
+    public String getWindowHandle() {
+        return "stub";
+    }
+
+    @Override
+    public TargetLocator switchTo() {
+        throw new UnsupportedOperationException("switchTo is not supported by the stub driver");
+    }
+
+    @Override
+    public Navigation navigate() {
+        throw new UnsupportedOperationException("navigate is not supported by the stub driver");
+    }
+
+    @Override
+    public Options manage() {
+        throw new UnsupportedOperationException("manage is not supported by the stub driver");
+    }
+
+    /*
+    Answers the scripts of BrowserUtils:
+    - a list of elements: their texts, or an attribute of each if a name is passed too
+    - a select element: the texts of its options
+    - anything else, e.g. document.readyState: "complete"
+     */
+    @Override
+    public Object executeScript(String script, Object... args) {
+        if (args.length > 0 && args[0] instanceof List) {
+            List<String> values = new ArrayList<>();
+            for (Object each : (List<?>) args[0]) {
+                WebElement element = (WebElement) each;
+                values.add(args.length > 1 ? element.getAttribute((String) args[1]) : element.getText());
+            }
+            return values;
+        }
+        if (args.length > 0 && args[0] instanceof StubElement) {
+            List<String> texts = new ArrayList<>();
+            for (WebElement option : ((StubElement) args[0]).children) {
+                texts.add(option.getText());
+            }
+            return texts;
+        }
+        return "complete";
+    }
+
+    @Override
+    public Object executeAsyncScript(String script, Object... args) {
+        return true;
+    }
+
+    @Override
+    public <X> X getScreenshotAs(OutputType<X> target) {
+        return target.convertFromPngBytes(new byte[0]);
+    }
+
+    /**
+     * Element that is always displayed and enabled, and counts its clicks
+     */
+    public static class StubElement implements WebElement {
+
+        private final String tagName;
+        private final String text;
+        private final Map<String, String> attributes;
+        private final List<WebElement> children = new ArrayList<>();
+        private int clicks;
+
+        StubElement(String tagName, String text, Map<String, String> attributes) {
+            this.tagName = tagName;
+            this.text = text;
+            this.attributes = new HashMap<>(attributes);
+        }
+
+        public int getClicks() {
+            return clicks;
+        }
+
+        @Override
+        public void click() {
+            clicks++;
+        }
+
+        @Override
+        public void submit() {
+        }
+
+        @Override
+        public void sendKeys(CharSequence... keysToSend) {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public String getTagName() {
+            return tagName;
+        }
+
+        @Override
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public String getDomAttribute(String name) {
+            return attributes.get(name);
+        }
+
+        @Override
+        public boolean isSelected() {
+            return false;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public List<WebElement> findElements(By by) {
+            return new ArrayList<>(children);
+        }
+
+        @Override
+        public WebElement findElement(By by) {
+            if (children.isEmpty()) {
+                throw new NoSuchElementException("Stub element has no children: " + by);
+            }
+            return children.get(0);
+        }
+
+        @Override
+        public boolean isDisplayed() {
+            return true;
+        }
+
+        @Override
+        public Point getLocation() {
+            return new Point(0, 0);
+        }
+
+        @Override
+        public Dimension getSize() {
+            return new Dimension(100, 20);
+        }
+
+        @Override
+        public Rectangle getRect() {
+            return new Rectangle(getLocation(), getSize());
+        }
+
+        @Override
+        public String getCssValue(String propertyName) {
+            return "";
+        }
+
+        @Override
+        public <X> X getScreenshotAs(OutputType<X> target) {
+            return target.convertFromPngBytes(new byte[0]);
+        }
+    }
+
+}
@@ -1,6 +1,6 @@
 package com.cydeo.pages;
 
-import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.PageElementDecorator;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 import org.openqa.selenium.support.PageFactory;
@@ -8,8 +8,9 @@ import org.openqa.selenium.support.PageFactory;
 public class BingSearchPage {
 
     //#1:
+    @SuppressWarnings("this-escape") //the proxies only look the elements up when they are used
     public BingSearchPage(){
-        PageFactory.initElements(Driver.getDriver(), this);
+        PageFactory.initElements(new PageElementDecorator(), this);
     }
 
     //#2:
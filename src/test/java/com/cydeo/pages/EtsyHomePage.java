@@ -1,14 +1,15 @@
 package com.cydeo.pages;
 
-import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.PageElementDecorator;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 import org.openqa.selenium.support.PageFactory;
 
 public class EtsyHomePage {
 
+    @SuppressWarnings("this-escape") //the proxies only look the elements up when they are used
     public EtsyHomePage(){
-        PageFactory.initElements(Driver.getDriver(), this);
+        PageFactory.initElements(new PageElementDecorator(), this);
     }
 
     @FindBy(id = "global-enhancements-search-query")
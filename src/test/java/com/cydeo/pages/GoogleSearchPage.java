@@ -1,6 +1,6 @@
 package com.cydeo.pages;
 
-import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.PageElementDecorator;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 import org.openqa.selenium.support.PageFactory;
@@ -8,8 +8,9 @@ import org.openqa.selenium.support.PageFactory;
 public class GoogleSearchPage {
 
     //#1- Create the constructor and initialize the driver with object
+    @SuppressWarnings("this-escape") //the proxies only look the elements up when they are used
     public GoogleSearchPage(){
-        PageFactory.initElements(Driver.getDriver(), this);
+        PageFactory.initElements(new PageElementDecorator(), this);
     }
 
     //#2- Use @FindBy instead of findElement()
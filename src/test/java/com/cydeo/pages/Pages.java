@@ -0,0 +1,38 @@
+package com.cydeo.pages;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Registry of the page objects of the current scenario.
+A page object is only created the first time it is asked for, and every step definition class of the scenario gets the same instance.
+Each thread runs its own scenario, so the registry is kept in a ThreadLocal, and cleared after every scenario (see Hooks).
+
+Usage: WT_OrderPage orderPage = Pages.get(WT_OrderPage.class);
+ */
+public class Pages {
+
+    private Pages(){}
+
+    private static final ThreadLocal<Map<Class<?>, Object>> pages = ThreadLocal.withInitial(HashMap::new);
+
+    public static <T> T get(Class<T> pageType){
+        return pageType.cast(pages.get().computeIfAbsent(pageType, Pages::create));
+    }
+
+    /**
+     * Forgets all the page objects of the current thread, call it after every scenario.
+     */
+    public static void clear(){
+        pages.remove();
+    }
+
+    private static Object create(Class<?> pageType){
+        try {
+            return pageType.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create page object " + pageType.getSimpleName(), e);
+        }
+    }
+
+}
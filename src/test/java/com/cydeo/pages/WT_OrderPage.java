@@ -1,17 +1,15 @@
 package com.cydeo.pages;
 
-import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.BrowserUtils;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 import java.util.List;
+import java.util.Map;
 
 public class WT_OrderPage extends  WT_BasePage{
 
-    public WT_OrderPage(){
-        PageFactory.initElements(Driver.getDriver(), this);
-    }
+    //elements of this class are initialized by the WT_BasePage constructor, PageFactory goes through the subclass fields too
 
     @FindBy(name = "product")
     public WebElement productDropdown;
@@ -58,5 +56,12 @@ public class WT_OrderPage extends  WT_BasePage{
     @FindBy(xpath = "//button[.='Process Order']")
     public WebElement processButton;
 
+    /**
+     * Fills the order form with one JavaScript call instead of one sendKeys() per field.
+     * Keys are the names of the fields: product, quantity, name, street, city, state, zip, card, cardNo, cardExp
+     */
+    public void fillOrderForm(Map<String, String> fields){
+        BrowserUtils.fillForm(fields);
+    }
 
 }
@@ -1,14 +1,15 @@
 package com.cydeo.pages;
 
-import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.PageElementDecorator;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
 import org.openqa.selenium.support.PageFactory;
 
 public class WT_ViewAllOrdersPage {
 
+    @SuppressWarnings("this-escape") //the proxies only look the elements up when they are used
     public WT_ViewAllOrdersPage(){
-        PageFactory.initElements(Driver.getDriver(), this);
+        PageFactory.initElements(new PageElementDecorator(), this);
     }
 
     @FindBy(xpath = "//table[@class='table is-fullwidth']/tbody/tr[1]/td[1]")
@@ -0,0 +1,52 @@
+package com.cydeo.plugins;
+
+import io.cucumber.core.plugin.JsonFormatter;
+import io.cucumber.plugin.EventListener;
+import io.cucumber.plugin.event.EventPublisher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Same as the built-in "json" plugin, but every attempt of the run gets its own file in the given directory:
+attempt-1.json for the first run, attempt-2.json for the first retry of the failed scenarios (see ScenarioRetry), and so on.
+With a single file, every retry would overwrite the results of the scenarios that already passed.
+
+ShardReportMerger combines the attempts (and the shards) into one target/cucumber.json and html report.
+
+Usage: "com.cydeo.plugins.AttemptJsonPlugin:target/cucumber-json" in CukesRunner, and in junit-platform.properties for the retries
+ */
+public class AttemptJsonPlugin implements EventListener {
+
+    //Cucumber creates the plugins again for every retry, in the same JVM
+    private static final AtomicInteger attempts = new AtomicInteger();
+
+    private final JsonFormatter formatter;
+
+    public AttemptJsonPlugin(File outputDir) throws IOException {
+        int attempt = attempts.incrementAndGet();
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("Could not create " + outputDir);
+        }
+
+        //results of a previous run must not be merged into this one
+        if (attempt == 1) {
+            File[] previous = outputDir.listFiles((dir, name) -> name.startsWith("attempt-") && name.endsWith(".json"));
+            if (previous != null) {
+                for (File each : previous) {
+                    each.delete();
+                }
+            }
+        }
+
+        formatter = new JsonFormatter(new FileOutputStream(new File(outputDir, "attempt-" + attempt + ".json")));
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        formatter.setEventPublisher(publisher);
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.cydeo.plugins;
+
+import com.cydeo.utilities.ScenarioCheckpoints;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.Examples;
+import io.cucumber.messages.types.FeatureChild;
+import io.cucumber.messages.types.GherkinDocument;
+import io.cucumber.messages.types.Pickle;
+import io.cucumber.messages.types.Scenario;
+import io.cucumber.messages.types.TableRow;
+import io.cucumber.messages.types.PickleStep;
+import io.cucumber.messages.types.PickleStepArgument;
+import io.cucumber.messages.types.PickleTableCell;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.DataTableArgument;
+import io.cucumber.plugin.event.DocStringArgument;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.StepArgument;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepStarted;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+Feeds ScenarioCheckpoints with the steps of the scenarios: every scenario is added to the prefix tree when its feature
+is parsed (if it is selected to run, see CheckpointSelection), and the steps of the running scenario are followed on its thread.
+
+A step is identified by its text and its data table or doc string, so the same step with another table is another step.
+ */
+public class CheckpointPlugin implements ConcurrentEventListener {
+
+    //id of a scenario or an examples row -> its line in the feature file
+    private final Map<String, Long> lines = new ConcurrentHashMap<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> ScenarioCheckpoints.reset());
+        publisher.registerHandlerFor(Envelope.class, this::handleEnvelope);
+        publisher.registerHandlerFor(TestCaseStarted.class, this::handleTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, event -> {
+            if (event.getTestStep() instanceof PickleStepTestStep) {
+                ScenarioCheckpoints.startStep();
+            }
+        });
+        publisher.registerHandlerFor(TestCaseFinished.class, event -> ScenarioCheckpoints.finishScenario());
+    }
+
+    private void handleEnvelope(Envelope envelope) {
+        envelope.getGherkinDocument().ifPresent(this::addLines);
+        envelope.getPickle().ifPresent(pickle -> ScenarioCheckpoints.addScenario(location(pickle), pickle.getSteps().stream()
+                .map(CheckpointPlugin::key)
+                .collect(Collectors.toList())));
+    }
+
+    private void addLines(GherkinDocument document) {
+        document.getFeature().ifPresent(feature -> {
+            for (FeatureChild child : feature.getChildren()) {
+                child.getScenario().ifPresent(this::addLines);
+                child.getRule().ifPresent(rule -> rule.getChildren().forEach(each -> each.getScenario().ifPresent(this::addLines)));
+            }
+        });
+    }
+
+    private void addLines(Scenario scenario) {
+        lines.put(scenario.getId(), scenario.getLocation().getLine());
+        for (Examples examples : scenario.getExamples()) {
+            for (TableRow row : examples.getTableBody()) {
+                lines.put(row.getId(), row.getLocation().getLine());
+            }
+        }
+    }
+
+    //"uri:line" of the pickle, the line of its examples row if it comes from a scenario outline
+    private String location(Pickle pickle) {
+        List<String> astNodeIds = pickle.getAstNodeIds();
+        return pickle.getUri() + ":" + lines.get(astNodeIds.get(astNodeIds.size() - 1));
+    }
+
+    private void handleTestCaseStarted(TestCaseStarted event) {
+        ScenarioCheckpoints.startScenario(event.getTestCase().getTestSteps().stream()
+                .filter(PickleStepTestStep.class::isInstance)
+                .map(each -> key(((PickleStepTestStep) each).getStep().getText(), ((PickleStepTestStep) each).getStep().getArgument()))
+                .collect(Collectors.toList()));
+    }
+
+    private static String key(PickleStep step) {
+        PickleStepArgument argument = step.getArgument().orElse(null);
+        if (argument != null && argument.getDataTable().isPresent()) {
+            return key(step.getText(), argument.getDataTable().get().getRows().stream()
+                    .map(row -> row.getCells().stream().map(PickleTableCell::getValue).collect(Collectors.toList()))
+                    .collect(Collectors.toList()));
+        }
+        if (argument != null && argument.getDocString().isPresent()) {
+            return step.getText() + "\n" + argument.getDocString().get().getContent();
+        }
+        return step.getText();
+    }
+
+    private static String key(String text, StepArgument argument) {
+        if (argument instanceof DataTableArgument) {
+            return key(text, ((DataTableArgument) argument).cells());
+        }
+        if (argument instanceof DocStringArgument) {
+            return text + "\n" + ((DocStringArgument) argument).getContent();
+        }
+        return text;
+    }
+
+    private static String key(String text, List<List<String>> rows) {
+        return text + rows.stream().map(row -> "\n|" + String.join("|", row)).collect(Collectors.joining());
+    }
+
+}
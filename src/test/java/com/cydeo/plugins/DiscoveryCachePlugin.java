@@ -0,0 +1,39 @@
+package com.cydeo.plugins;
+
+import com.cydeo.utilities.DiscoveryCache;
+import io.cucumber.messages.types.Envelope;
+import io.cucumber.messages.types.PickleTag;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.TestRunFinished;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/*
+Keeps the tags of the scenarios of every feature file parsed in this run, and writes them to the DiscoveryCache
+at the end of the run. The next runs only parse the feature files they need.
+ */
+public class DiscoveryCachePlugin implements ConcurrentEventListener {
+
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private final Map<String, List<Map<String, Object>>> scenarios = new ConcurrentHashMap<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(Envelope.class, this::handleEnvelope);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> DiscoveryCache.update(hashes, scenarios));
+    }
+
+    private void handleEnvelope(Envelope envelope) {
+        envelope.getSource().ifPresent(source -> hashes.put(source.getUri(), DiscoveryCache.hash(source.getData())));
+        envelope.getPickle().ifPresent(pickle -> scenarios.computeIfAbsent(pickle.getUri(), uri -> new CopyOnWriteArrayList<>())
+                .add(Map.of(
+                        "name", pickle.getName(),
+                        "tags", pickle.getTags().stream().map(PickleTag::getName).collect(Collectors.toList()))));
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.cydeo.plugins;
+
+import com.cydeo.utilities.StreamingReportRenderer;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Result;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import org.openqa.selenium.json.Json;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Writes every finished scenario as one line of JSON (NDJSON) into results.ndjson of the given directory, as soon as it finishes.
+Only the scenarios that are still running are kept in memory, so it does not slow down on very large runs
+the way the html and PrettyReports plugins do (they keep the whole run in memory and render it at the end).
+
+Every line is flushed, so a crashed or killed run still leaves all the finished scenarios in the file.
+At the end of the run report.html is rendered from the file (see StreamingReportRenderer), and after a crash it can be
+rendered again with: mvn -Pstream-report process-test-classes
+
+The retries of failed scenarios (see ScenarioRetry) are appended to the same file, with their attempt number.
+
+Usage: "com.cydeo.plugins.StreamingReportPlugin:target/cucumber-stream" in CukesRunner, and in junit-platform.properties for the retries
+ */
+public class StreamingReportPlugin implements ConcurrentEventListener {
+
+    //Cucumber creates the plugins again for every retry, in the same JVM
+    private static final AtomicInteger attempts = new AtomicInteger();
+
+    private final int attempt;
+    private final Path results;
+    private final Path report;
+    private final BufferedWriter writer;
+
+    private final Map<UUID, List<Map<String, Object>>> runningScenarios = new ConcurrentHashMap<>();
+
+    public StreamingReportPlugin(File outputDir) throws IOException {
+        attempt = attempts.incrementAndGet();
+        Files.createDirectories(outputDir.toPath());
+        results = outputDir.toPath().resolve("results.ndjson");
+        report = outputDir.toPath().resolve("report.html");
+
+        //the first attempt starts a new file, the retries are appended to it
+        writer = attempt == 1
+                ? Files.newBufferedWriter(results, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(results, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, this::handleTestRunStarted);
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> runningScenarios.put(event.getTestCase().getId(), new ArrayList<>()));
+        publisher.registerHandlerFor(TestStepFinished.class, this::handleTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::handleTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, this::handleTestRunFinished);
+    }
+
+    private void handleTestRunStarted(TestRunStarted event) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "runStarted");
+        line.put("attempt", attempt);
+        line.put("time", event.getInstant().toString());
+        write(line);
+    }
+
+    private void handleTestStepFinished(TestStepFinished event) {
+        List<Map<String, Object>> steps = runningScenarios.get(event.getTestCase().getId());
+        if (steps == null || !(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        PickleStepTestStep testStep = (PickleStepTestStep) event.getTestStep();
+        Map<String, Object> step = new LinkedHashMap<>();
+        step.put("text", testStep.getStep().getKeyword() + testStep.getStep().getText());
+        step.put("status", event.getResult().getStatus().name());
+        step.put("durationMillis", event.getResult().getDuration().toMillis());
+        String error = error(event.getResult());
+        if (error != null) {
+            step.put("error", error);
+        }
+        synchronized (steps) {
+            steps.add(step);
+        }
+    }
+
+    private void handleTestCaseFinished(TestCaseFinished event) {
+        TestCase testCase = event.getTestCase();
+        List<Map<String, Object>> steps = runningScenarios.remove(testCase.getId());
+
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "scenario");
+        line.put("attempt", attempt);
+        line.put("uri", testCase.getUri().toString());
+        line.put("line", testCase.getLocation().getLine());
+        line.put("name", testCase.getName());
+        line.put("tags", testCase.getTags());
+        line.put("status", event.getResult().getStatus().name());
+        line.put("durationMillis", event.getResult().getDuration().toMillis());
+        line.put("thread", Thread.currentThread().getName());
+        String error = error(event.getResult());
+        if (error != null) {
+            line.put("error", error);
+        }
+        line.put("steps", steps == null ? List.of() : steps);
+        write(line);
+    }
+
+    private void handleTestRunFinished(TestRunFinished event) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("type", "runFinished");
+        line.put("attempt", attempt);
+        line.put("time", event.getInstant().toString());
+        write(line);
+        try {
+            writer.close();
+            StreamingReportRenderer.render(results, report);
+        } catch (IOException e) {
+            System.out.println("Could not render the streaming report: " + e.getMessage());
+        }
+    }
+
+    //first line of the error is enough for the report, the full stack trace is in the surefire report
+    private static String error(Result result) {
+        if (result.getError() == null) {
+            return null;
+        }
+        String message = String.valueOf(result.getError());
+        int newLine = message.indexOf('\n');
+        return newLine < 0 ? message : message.substring(0, newLine);
+    }
+
+    private synchronized void write(Map<String, Object> line) {
+        try {
+            StringBuilder json = new StringBuilder();
+            new Json().newOutput(json).setPrettyPrint(false).write(line).close();
+            writer.write(json.toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,387 @@
+package com.cydeo.plugins;
+
+import com.cydeo.utilities.ElementRecovery;
+import com.cydeo.utilities.TimingRecorder;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/*
+Records how long every step, scenario and feature takes, and how much of a step was spent in
+WebDriver commands, explicit waits and fixed sleeps (see TimingRecorder).
+
+At the end of the run it writes into the given directory:
+- timing.json : machine readable summary (also used to balance shards across CI nodes), with the element retries per locator (see ElementRecovery)
+- timing.html : flame-style view of every scenario, and the slowest steps of the run
+- durations.json : last known duration of every scenario, kept across runs (used by ShardFilter to balance shards)
+
+It also measures the startup of the run, which matters most for small reruns:
+from the JVM start until the run starts (includes finding and parsing the feature files, see DiscoveryCache),
+and from there until the first scenario starts (includes loading the glue and the @BeforeAll hooks, e.g. starting the local Web Table app).
+
+Usage in the runner: "com.cydeo.plugins.TimingReportPlugin:target/cucumber-timing"
+ */
+public class TimingReportPlugin implements ConcurrentEventListener {
+
+    private static final int SLOWEST_STEPS = 25;
+
+    private final File outputDir;
+
+    private final Map<UUID, ScenarioTiming> runningScenarios = new ConcurrentHashMap<>();
+    private final List<ScenarioTiming> finishedScenarios = new ArrayList<>();
+    private final Map<String, Aggregate> stepDefinitions = new ConcurrentHashMap<>();
+
+    private volatile Instant runStarted;
+    private final AtomicReference<Instant> firstScenarioStarted = new AtomicReference<>();
+
+    public TimingReportPlugin(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    private static class ScenarioTiming {
+        String name;
+        String uri;
+        int line;
+        String status;
+        long durationMillis;
+        final List<StepTiming> steps = new ArrayList<>();
+    }
+
+    private static class StepTiming {
+        String text;
+        String scenario;
+        long durationMillis;
+        long commandMillis;
+        long commandCount;
+        long waitMillis;
+        long sleepMillis;
+    }
+
+    private static class Aggregate {
+        long count;
+        long totalMillis;
+        long maxMillis;
+
+        synchronized void add(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> runStarted = event.getInstant());
+        publisher.registerHandlerFor(TestCaseStarted.class, this::handleTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, event -> TimingRecorder.startStep());
+        publisher.registerHandlerFor(TestStepFinished.class, this::handleTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::handleTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> writeReports());
+    }
+
+    private void handleTestCaseStarted(TestCaseStarted event) {
+        firstScenarioStarted.compareAndSet(null, event.getInstant());
+        TestCase testCase = event.getTestCase();
+        ScenarioTiming scenario = new ScenarioTiming();
+        scenario.name = testCase.getName();
+        scenario.uri = testCase.getUri().toString();
+        scenario.line = testCase.getLocation().getLine();
+        runningScenarios.put(testCase.getId(), scenario);
+    }
+
+    private void handleTestStepFinished(TestStepFinished event) {
+        TimingRecorder.Breakdown breakdown = TimingRecorder.finishStep();
+        ScenarioTiming scenario = runningScenarios.get(event.getTestCase().getId());
+        if (scenario == null) {
+            return;
+        }
+
+        StepTiming step = new StepTiming();
+        step.text = stepText(event.getTestStep());
+        step.scenario = scenario.name;
+        step.durationMillis = event.getResult().getDuration().toMillis();
+        step.commandMillis = breakdown.commandNanos / 1_000_000;
+        step.commandCount = breakdown.commandCount;
+        step.waitMillis = breakdown.waitNanos / 1_000_000;
+        step.sleepMillis = breakdown.sleepNanos / 1_000_000;
+        scenario.steps.add(step);
+
+        stepDefinitions.computeIfAbsent(stepDefinition(event.getTestStep()), key -> new Aggregate()).add(step.durationMillis);
+    }
+
+    private void handleTestCaseFinished(TestCaseFinished event) {
+        ScenarioTiming scenario = runningScenarios.remove(event.getTestCase().getId());
+        if (scenario == null) {
+            return;
+        }
+        scenario.status = event.getResult().getStatus().name();
+        scenario.durationMillis = event.getResult().getDuration().toMillis();
+        synchronized (finishedScenarios) {
+            finishedScenarios.add(scenario);
+        }
+    }
+
+    private static String stepText(TestStep testStep) {
+        if (testStep instanceof PickleStepTestStep) {
+            PickleStepTestStep step = (PickleStepTestStep) testStep;
+            return step.getStep().getKeyword() + step.getStep().getText();
+        }
+        if (testStep instanceof HookTestStep) {
+            return "@" + ((HookTestStep) testStep).getHookType() + " " + testStep.getCodeLocation();
+        }
+        return testStep.getCodeLocation();
+    }
+
+    private static String stepDefinition(TestStep testStep) {
+        //undefined steps have no code location
+        return testStep.getCodeLocation() != null ? testStep.getCodeLocation() : stepText(testStep);
+    }
+
+    private void writeReports() {
+        List<ScenarioTiming> scenarios;
+        synchronized (finishedScenarios) {
+            scenarios = new ArrayList<>(finishedScenarios);
+        }
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(new File(outputDir, "timing.json").toPath(),
+                    new Json().toJson(summary(scenarios)).getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(outputDir, "timing.html").toPath(),
+                    html(scenarios).getBytes(StandardCharsets.UTF_8));
+            updateDurations(new File(outputDir, "durations.json").toPath(), scenarios);
+            System.out.println("Startup: " + startup());
+        } catch (IOException e) {
+            System.out.println("Could not write the timing report: " + e.getMessage());
+        }
+    }
+
+    /*
+    The durations are only added or updated, never removed,
+    so a shard or a retry that runs only a few scenarios does not lose the history of the others.
+     */
+    private static void updateDurations(Path file, List<ScenarioTiming> scenarios) throws IOException {
+        Map<String, Long> durations = new TreeMap<>(readDurations(file));
+        for (ScenarioTiming scenario : scenarios) {
+            durations.put(scenario.uri + ":" + scenario.line, scenario.durationMillis);
+        }
+        Files.write(file, new Json().toJson(durations).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads a durations.json written by this plugin
+     *
+     * @param file e.g. target/cucumber-timing/durations.json
+     * @return "uri:line" of the scenario -> duration in milliseconds, empty if the file does not exist
+     */
+    public static Map<String, Long> readDurations(Path file) throws IOException {
+        Map<String, Long> durations = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return durations;
+        }
+        Map<String, Object> json = new Json().toType(Files.readString(file), Json.MAP_TYPE);
+        json.forEach((key, value) -> durations.put(key, ((Number) value).longValue()));
+        return durations;
+    }
+
+    /**
+     * Reads the durations of the scenarios that ran in one run, from the timing.json written by this plugin
+     *
+     * @param file e.g. target/cucumber-timing/timing.json
+     * @return "uri:line" of the scenario -> duration in milliseconds, empty if the file does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Long> readRunDurations(Path file) throws IOException {
+        Map<String, Long> durations = new TreeMap<>();
+        if (!Files.exists(file)) {
+            return durations;
+        }
+        Map<String, Object> json = new Json().toType(Files.readString(file), Json.MAP_TYPE);
+        for (Object each : (List<Object>) json.getOrDefault("scenarios", List.of())) {
+            Map<String, Object> scenario = (Map<String, Object>) each;
+            durations.put(scenario.get("uri") + ":" + ((Number) scenario.get("line")).longValue(),
+                    ((Number) scenario.get("durationMillis")).longValue());
+        }
+        return durations;
+    }
+
+    /**
+     * @return milliseconds of the startup phases, a phase is missing if it did not happen (e.g. no scenario ran)
+     */
+    private Map<String, Long> startup() {
+        Map<String, Long> startup = new LinkedHashMap<>();
+        if (runStarted == null) {
+            return startup;
+        }
+        long jvmStarted = ManagementFactory.getRuntimeMXBean().getStartTime();
+        startup.put("jvmToRunStartedMillis", runStarted.toEpochMilli() - jvmStarted);
+        Instant firstScenario = firstScenarioStarted.get();
+        if (firstScenario != null) {
+            startup.put("runStartedToFirstScenarioMillis", firstScenario.toEpochMilli() - runStarted.toEpochMilli());
+        }
+        return startup;
+    }
+
+    private Map<String, Object> summary(List<ScenarioTiming> scenarios) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("startup", startup());
+
+        Map<String, Long> features = new LinkedHashMap<>();
+        List<Map<String, Object>> scenarioList = new ArrayList<>();
+        for (ScenarioTiming scenario : scenarios) {
+            features.merge(scenario.uri, scenario.durationMillis, Long::sum);
+
+            Map<String, Object> each = new LinkedHashMap<>();
+            each.put("name", scenario.name);
+            each.put("uri", scenario.uri);
+            each.put("line", scenario.line);
+            each.put("status", scenario.status);
+            each.put("durationMillis", scenario.durationMillis);
+            scenarioList.add(each);
+        }
+        summary.put("features", features);
+        summary.put("scenarios", scenarioList);
+
+        Map<String, Object> definitions = new LinkedHashMap<>();
+        stepDefinitions.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Aggregate> e) -> e.getValue().totalMillis).reversed())
+                .forEach(e -> {
+                    Map<String, Object> each = new LinkedHashMap<>();
+                    each.put("count", e.getValue().count);
+                    each.put("totalMillis", e.getValue().totalMillis);
+                    each.put("maxMillis", e.getValue().maxMillis);
+                    definitions.put(e.getKey(), each);
+                });
+        summary.put("stepDefinitions", definitions);
+
+        Map<String, Object> commands = new LinkedHashMap<>();
+        TimingRecorder.commandTotals().forEach((command, totals) -> {
+            Map<String, Object> each = new LinkedHashMap<>();
+            each.put("count", totals[0]);
+            each.put("totalMillis", totals[1] / 1_000_000);
+            commands.put(command, each);
+        });
+        summary.put("driverCommands", commands);
+        summary.put("elementRetries", ElementRecovery.metrics());
+
+        List<Map<String, Object>> slowest = new ArrayList<>();
+        for (StepTiming step : slowestSteps(scenarios)) {
+            Map<String, Object> each = new LinkedHashMap<>();
+            each.put("step", step.text);
+            each.put("scenario", step.scenario);
+            each.put("durationMillis", step.durationMillis);
+            each.put("commandMillis", step.commandMillis);
+            each.put("commandCount", step.commandCount);
+            each.put("waitMillis", step.waitMillis);
+            each.put("sleepMillis", step.sleepMillis);
+            slowest.add(each);
+        }
+        summary.put("slowestSteps", slowest);
+
+        return summary;
+    }
+
+    private static List<StepTiming> slowestSteps(List<ScenarioTiming> scenarios) {
+        return scenarios.stream()
+                .flatMap(scenario -> scenario.steps.stream())
+                .sorted(Comparator.comparingLong((StepTiming step) -> step.durationMillis).reversed())
+                .limit(SLOWEST_STEPS)
+                .collect(Collectors.toList());
+    }
+
+    /*
+    Every scenario is one row, and every step is a block with a width proportional to its duration.
+    Inside a step block, the darker bars show the share of driver commands, waits and sleeps.
+     */
+    private static String html(List<ScenarioTiming> scenarios) {
+        long longest = scenarios.stream().mapToLong(s -> s.durationMillis).max().orElse(1);
+
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Timing report</title><style>")
+                .append("body{font-family:sans-serif;font-size:13px}")
+                .append(".row{display:flex;height:22px;margin:2px 0;background:#eee}")
+                .append(".step{overflow:hidden;white-space:nowrap;border-right:1px solid #fff;background:#f4b183;position:relative}")
+                .append(".step span{position:relative;z-index:1;padding-left:2px}")
+                .append(".bar{position:absolute;bottom:0;height:5px}")
+                .append(".command{background:#2e75b6}.wait{background:#70ad47}.sleep{background:#c00000}")
+                .append("table{border-collapse:collapse}td,th{border:1px solid #ccc;padding:3px 6px;text-align:left}")
+                .append("</style></head><body>");
+
+        html.append("<h2>Scenarios</h2><p>Legend: <span class=\"command\">&nbsp;&nbsp;&nbsp;</span> driver commands ")
+                .append("<span class=\"wait\">&nbsp;&nbsp;&nbsp;</span> waits ")
+                .append("<span class=\"sleep\">&nbsp;&nbsp;&nbsp;</span> sleeps</p>");
+        scenarios.stream()
+                .sorted(Comparator.comparingLong((ScenarioTiming s) -> s.durationMillis).reversed())
+                .forEach(scenario -> {
+                    html.append("<div>").append(escape(scenario.name)).append(" (").append(escape(scenario.uri))
+                            .append(":").append(scenario.line).append(") ").append(scenario.durationMillis).append(" ms ")
+                            .append(scenario.status).append("</div>");
+                    html.append("<div class=\"row\" style=\"width:")
+                            .append(Math.max(1, scenario.durationMillis * 100 / longest)).append("%\">");
+                    for (StepTiming step : scenario.steps) {
+                        long total = Math.max(1, step.durationMillis);
+                        html.append("<div class=\"step\" style=\"flex:").append(total).append("\" title=\"")
+                                .append(escape(step.text)).append(" - ").append(step.durationMillis).append(" ms, commands ")
+                                .append(step.commandMillis).append(" ms (").append(step.commandCount).append("), waits ")
+                                .append(step.waitMillis).append(" ms, sleeps ").append(step.sleepMillis).append(" ms\">")
+                                .append("<span>").append(escape(step.text)).append("</span>")
+                                .append(bar("command", 0, step.commandMillis, total))
+                                .append(bar("wait", step.commandMillis, step.waitMillis, total))
+                                .append(bar("sleep", step.commandMillis + step.waitMillis, step.sleepMillis, total))
+                                .append("</div>");
+                    }
+                    html.append("</div>");
+                });
+
+        html.append("<h2>Slowest steps</h2><table><tr><th>Step</th><th>Scenario</th><th>Total ms</th>")
+                .append("<th>Commands ms (count)</th><th>Waits ms</th><th>Sleeps ms</th></tr>");
+        for (StepTiming step : slowestSteps(scenarios)) {
+            html.append("<tr><td>").append(escape(step.text)).append("</td><td>").append(escape(step.scenario))
+                    .append("</td><td>").append(step.durationMillis).append("</td><td>").append(step.commandMillis)
+                    .append(" (").append(step.commandCount).append(")</td><td>").append(step.waitMillis)
+                    .append("</td><td>").append(step.sleepMillis).append("</td></tr>");
+        }
+        html.append("</table></body></html>");
+        return html.toString();
+    }
+
+    private static String bar(String type, long offsetMillis, long millis, long totalMillis) {
+        if (millis <= 0) {
+            return "";
+        }
+        return "<div class=\"bar " + type + "\" style=\"left:" + Math.min(100, offsetMillis * 100 / totalMillis)
+                + "%;width:" + Math.min(100, millis * 100 / totalMillis) + "%\"></div>";
+    }
+
+    private static String escape(String text) {
+        return text == null ? "" : text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+}
@@ -1,20 +1,31 @@
 package com.cydeo.runners;
 
-import io.cucumber.junit.Cucumber;
-import io.cucumber.junit.CucumberOptions;
-import org.junit.runner.RunWith;
+import org.junit.platform.suite.api.ConfigurationParameter;
+import org.junit.platform.suite.api.IncludeEngines;
+import org.junit.platform.suite.api.SelectClasspathResource;
+import org.junit.platform.suite.api.Suite;
 
-@RunWith(Cucumber.class)
-@CucumberOptions(
-        plugin = {
-                "html:target/cucumber-reports.html",
-                "rerun:target/rerun.txt",
-                "me.jvt.cucumber.report.PrettyReports:target/cucumber"
-        },
-        features = "src/test/resources/features",
-        glue = "com/cydeo/step_definitions",
-        dryRun = false,
-        tags = " @wip",
-        publish = true //generating a report with public link
-)
+import static io.cucumber.junit.platform.engine.Constants.*;
+
+/*
+Runs on the Cucumber JUnit Platform engine, which can execute scenarios in parallel.
+Number of threads is controlled by "parallel.threads" in configuration.properties (see ParallelismStrategy).
+The parallel settings are in junit-platform.properties, so they also apply when Surefire retries the failed scenarios.
+The tags are in junit-platform.properties too, so they can be changed from the command line: mvn test -Dcucumber.filter.tags=@smoke
+To split the scenarios between CI nodes, see ShardFilter. Only the feature files a run needs are parsed, see DiscoveryCache.
+ */
+@Suite
+@IncludeEngines("cucumber")
+@SelectClasspathResource("features")
+@ConfigurationParameter(key = PLUGIN_PROPERTY_NAME, value = "html:target/cucumber-reports.html, " +
+        "rerun:target/rerun.txt, " +
+        "com.cydeo.plugins.AttemptJsonPlugin:target/cucumber-json, " +
+        "me.jvt.cucumber.report.PrettyReports:target/cucumber, " +
+        "com.cydeo.plugins.TimingReportPlugin:target/cucumber-timing, " +
+        "com.cydeo.plugins.StreamingReportPlugin:target/cucumber-stream, " +
+        "com.cydeo.plugins.CheckpointPlugin, " +
+        "com.cydeo.plugins.DiscoveryCachePlugin")
+@ConfigurationParameter(key = GLUE_PROPERTY_NAME, value = "com.cydeo.step_definitions")
+@ConfigurationParameter(key = EXECUTION_DRY_RUN_PROPERTY_NAME, value = "false")
+@ConfigurationParameter(key = PLUGIN_PUBLISH_ENABLED_PROPERTY_NAME, value = "true") //generating a report with public link
 public class CukesRunner {}
@@ -1,6 +1,7 @@
 package com.cydeo.step_definitions;
 
 import com.cydeo.pages.BingSearchPage;
+import com.cydeo.pages.Pages;
 import com.cydeo.utilities.BrowserUtils;
 import com.cydeo.utilities.Driver;
 import io.cucumber.java.en.Given;
@@ -10,7 +11,7 @@ import org.openqa.selenium.Keys;
 
 public class Bing_StepDefinitions {
 
-    BingSearchPage bingSearchPage = new BingSearchPage();
+    BingSearchPage bingSearchPage = Pages.get(BingSearchPage.class);
 
     @Given("user is on the Bing search page")
     public void user_is_on_the_bing_search_page() {
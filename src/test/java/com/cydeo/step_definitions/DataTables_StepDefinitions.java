@@ -1,6 +1,7 @@
 package com.cydeo.step_definitions;
 
 import com.cydeo.pages.DropdownsPage;
+import com.cydeo.pages.Pages;
 import com.cydeo.utilities.BrowserUtils;
 import com.cydeo.utilities.Driver;
 import io.cucumber.java.en.Given;
@@ -50,7 +51,7 @@ public class DataTables_StepDefinitions {
 
     }
 
-    DropdownsPage dropdownsPage = new DropdownsPage();
+    DropdownsPage dropdownsPage = Pages.get(DropdownsPage.class);
 
     @Then("User should see below info in month dropdown")
     public void user_should_see_below_info_in_month_dropdown(List<String> expectedMonths) {
@@ -1,8 +1,10 @@
 package com.cydeo.step_definitions;
 
 import com.cydeo.pages.EtsyHomePage;
+import com.cydeo.pages.Pages;
 import com.cydeo.utilities.BrowserUtils;
 import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.ScenarioCheckpoints;
 import io.cucumber.java.an.E;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
@@ -10,19 +12,28 @@ import io.cucumber.java.en.When;
 
 public class Etsy_StepDefinitions {
 
-    EtsyHomePage etsyHomePage = new EtsyHomePage();
+    EtsyHomePage etsyHomePage = Pages.get(EtsyHomePage.class);
     @Given("user is on the Etsy homepage")
     public void user_is_on_the_etsy_homepage() {
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
         Driver.getDriver().get("https://www.etsy.com");
     }
 
     @When("user types Wooden Spoon in the search box")
     public void user_types_wooden_spoon_in_the_search_box() {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
         etsyHomePage.searchBox.sendKeys("Wooden Spoon");
     }
 
     @When("user click to Etsy search button")
     public void user_click_to_etsy_search_button() {
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
 
         etsyHomePage.searchButton.click();
     }
@@ -64,6 +75,9 @@ public class Etsy_StepDefinitions {
 
     @When("user types {string} in the search box")
     public void userTypesInTheSearchBox(String keyword) {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
 
         etsyHomePage.searchBox.sendKeys(keyword);
 
@@ -1,6 +1,7 @@
 package com.cydeo.step_definitions;
 
 import com.cydeo.pages.GoogleSearchPage;
+import com.cydeo.pages.Pages;
 import com.cydeo.utilities.BrowserUtils;
 import com.cydeo.utilities.Driver;
 import io.cucumber.java.en.And;
@@ -11,7 +12,7 @@ import org.openqa.selenium.Keys;
 
 public class Google_StepDefinitions {
 
-    GoogleSearchPage googleSearchPage = new GoogleSearchPage();
+    GoogleSearchPage googleSearchPage = Pages.get(GoogleSearchPage.class);
 
     @When("user searches for {word}")
     public void user_searches_for_apple(String word) {
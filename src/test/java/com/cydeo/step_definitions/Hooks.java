@@ -1,10 +1,21 @@
 package com.cydeo.step_definitions;
 
+import com.cydeo.pages.Pages;
 import com.cydeo.utilities.BrowserUtils;
+import com.cydeo.utilities.CommandTape;
+import com.cydeo.utilities.ConfigurationReader;
 import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.ElementRecovery;
+import com.cydeo.utilities.FailureEvidence;
+import com.cydeo.utilities.LoginStateCache;
+import com.cydeo.utilities.NetworkControl;
+import com.cydeo.utilities.PageSnapshot;
+import com.cydeo.utilities.ScenarioCheckpoints;
+import com.cydeo.utilities.ScenarioRetry;
+import com.cydeo.utilities.ScenarioScheduler;
+import com.cydeo.utilities.SoftAssertions;
+import com.cydeo.utilities.WebTableServer;
 import io.cucumber.java.*;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
 
 /*
 In this class we will be able to create "pre" and "post" condition
@@ -12,36 +23,156 @@ for ALL the SCENARIOS and even STEPS.
  */
 public class Hooks {
 
+    /*
+    @BeforeAll will be executed only once, before ALL the scenarios.
+    If the Web Table app is configured as "local", the embedded stand-in is started here.
+     */
+    @BeforeAll
+    public static void setupAll(){
+        System.out.println("---> Web Table app: " + ConfigurationReader.getWebTableUrl());
+    }
+
     //import the @Before coming from io.cucumber.java
    @Before (order = 1)
     public void setupMethod(){
         System.out.println("---> @Before: RUNNING BEFORE EACH SCENARIO");
     }
 
+    /*
+    Failed scenarios are retried in the same run (see ScenarioRetry).
+    A retry waits for the backoff first, and always gets a newly launched browser.
+    It also runs all of its steps, none of them is restored from a checkpoint (see ScenarioCheckpoints).
+     */
+    @Before (order = 0)
+    public void retrySetup(Scenario scenario){
+        if (ScenarioRetry.beforeScenario(scenario) > 1) {
+            ScenarioCheckpoints.runAllSteps();
+        }
+    }
+
+    /*
+    @ui scenarios wait here until there is a free browser slot ("driver.pool.size"), the others never wait.
+    It runs before all the other hooks, so a waiting scenario has not started anything yet.
+     */
+    @Before (value = "@ui", order = -1)
+    public void uiSlotSetup(){
+        ScenarioScheduler.acquireBrowserSlot();
+    }
+
+    /*
+    With browser=recording or browser=replay every scenario has its own recording of the browser commands (see CommandTape).
+     */
+    @Before (order = 0)
+    public void commandTapeSetup(Scenario scenario){
+        CommandTape.startScenario(scenario);
+    }
+
+    /*
+    Scenarios tagged with e.g. @network:slow-3g run on a throttled network (see NetworkControl).
+     */
+    @Before (order = 0)
+    public void networkSetup(Scenario scenario){
+        NetworkControl.startScenario(scenario);
+    }
+
+    /*
+    Scenarios tagged with @firefox run on Firefox, only on the thread that runs them.
+    Other threads keep using the browser from configuration.properties.
+     */
+    @Before (value = "@firefox", order = 0)
+    public void useFirefox(){
+        ConfigurationReader.overrideForCurrentThread("browser", "firefox");
+    }
+
    // @Before (value = "@ui", order = 2 )
     public void login_scenario_before(){
 
         System.out.println("---> @Before: RUNNING BEFORE EACH SCENARIO");
     }
 
+    /*
+    Runs before teardownMethod (higher order runs earlier, the default is 10000),
+    so a scenario that fails here still gets its screenshot and its browser is not re-used.
+     */
+    @After (order = 10001)
+    public void softAssertionsTeardown(){
+        SoftAssertions.assertAll();
+    }
+
     /*
     @After will be executed automatically after EVERY scenario in the project.
      */
     @After()
     public void teardownMethod(Scenario scenario){
 
-        if (scenario.isFailed()) {
+        //the screenshot is compressed and saved in the background, the report only gets a link to it
+        //a replay has no browser to take it from
+        if (scenario.isFailed() && Driver.hasDriver() && !CommandTape.isReplaying()) {
 
-            byte[] screenshot = ((TakesScreenshot) Driver.getDriver()).getScreenshotAs(OutputType.BYTES);
-            scenario.attach(screenshot, "image/png", scenario.getName());
+            FailureEvidence.capture(scenario);
 
         }
 
         System.out.println("---> @After: RUNNING AFTER EACH SCENARIO");
 
-        BrowserUtils.sleep(2);
-        Driver.closeDriver();
+        //a scenario that was sent back to the login page drops its cached session
+        LoginStateCache.afterScenario();
+
+        //blocked and cached requests of the scenario, before its browser goes back to the pool
+        NetworkControl.finishScenario(scenario);
 
+        //the browser of a failed scenario can not be trusted anymore, so it is not given back to the pool
+        if (scenario.isFailed()) {
+            Driver.quitDriver();
+        } else {
+            if (Driver.hasDriver()) {
+                BrowserUtils.waitForIdle();
+            }
+            Driver.closeDriver();
+        }
+        ScenarioRetry.afterScenario(scenario);
+        Pages.clear();
+        PageSnapshot.clear();
+        ConfigurationReader.clearThreadOverrides();
+
+    }
+
+    /*
+    Runs after teardownMethod (lower order runs later), once the browser of the scenario is closed.
+    Saves the recording, or fails the scenario if the replay did not send all the recorded commands.
+     */
+    @After (order = 1)
+    public void commandTapeTeardown(Scenario scenario){
+        CommandTape.finishScenario(scenario);
+    }
+
+    /*
+    Runs last (lowest order), so the next @ui scenario only starts once this one's browser is closed.
+     */
+    @After (value = "@ui", order = 0)
+    public void uiSlotTeardown(){
+        ScenarioScheduler.releaseBrowserSlot();
+    }
+
+    /*
+    @AfterAll will be executed only once, after ALL the scenarios are done.
+    This is where we quit the pooled browsers and print the run summaries.
+    When failed scenarios are retried, it is executed again after every retry.
+     */
+    @AfterAll
+    public static void teardownAll(){
+        Driver.shutdown();
+        WebTableServer.stop();
+        System.out.println(BrowserUtils.idleWaitReport());
+        FailureEvidence.awaitPending();
+        System.out.println(FailureEvidence.metrics());
+        System.out.println(LoginStateCache.metrics());
+        System.out.println(ScenarioRetry.report());
+        System.out.println(CommandTape.report());
+        System.out.println(ScenarioScheduler.report());
+        System.out.println(ElementRecovery.report());
+        System.out.println(NetworkControl.report());
+        System.out.println(ScenarioCheckpoints.report());
     }
 
     //@BeforeStep
@@ -49,6 +180,15 @@ public class Hooks {
         System.out.println("-----> @BeforeSTEP : Running before each step!");
     }
 
+    /*
+    With "checkpoint.enabled" the browser state after a prefix of steps shared by several scenarios is captured here,
+    so the next scenarios with the same prefix do not run it again (see ScenarioCheckpoints).
+     */
+    @AfterStep
+    public void checkpointStep(Scenario scenario){
+        ScenarioCheckpoints.afterStep(scenario);
+    }
+
     //@AfterStep
     public void teardownStep(){
         System.out.println("-----> @AfterSTEP : Running after each step!");
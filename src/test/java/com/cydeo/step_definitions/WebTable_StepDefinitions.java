@@ -1,11 +1,15 @@
 package com.cydeo.step_definitions;
 
+import com.cydeo.pages.Pages;
 import com.cydeo.pages.WT_BasePage;
 import com.cydeo.pages.WT_LoginPage;
 import com.cydeo.pages.WT_OrderPage;
 import com.cydeo.pages.WT_ViewAllOrdersPage;
 import com.cydeo.utilities.BrowserUtils;
+import com.cydeo.utilities.ConfigurationReader;
 import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.LoginStateCache;
+import com.cydeo.utilities.ScenarioCheckpoints;
 import io.cucumber.java.en.And;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
@@ -20,20 +24,32 @@ public class WebTable_StepDefinitions {
 
     @Given("user is on the Web Table app login page")
     public void user_is_on_the_web_table_app_login_page() {
-        Driver.getDriver().get("https://web-table-2.cydeo.com/login");
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
+        Driver.getDriver().get(ConfigurationReader.getWebTableUrl() + "/login");
     }
 
-    WT_LoginPage wtLoginPage = new WT_LoginPage();
+    WT_LoginPage wtLoginPage = Pages.get(WT_LoginPage.class);
     @When("user enters correct username")
     public void user_enters_correct_username() {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
         wtLoginPage.inputUsername.sendKeys("Test");
     }
     @When("user enters correct password")
     public void user_enters_correct_password() {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
         wtLoginPage.inputPassword.sendKeys("Tester");
     }
     @When("user clicks to login button")
     public void user_clicks_to_login_button() {
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
         wtLoginPage.loginButton.click();
     }
     @Then("user should see orders word in the URL")
@@ -46,6 +62,9 @@ public class WebTable_StepDefinitions {
 
     @When("user enters {string} username and {string} password")
     public void userEntersUsernameAndPassword(String username, String password) {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
 
         wtLoginPage.inputUsername.sendKeys(username);
         wtLoginPage.inputPassword.sendKeys(password);
@@ -54,25 +73,31 @@ public class WebTable_StepDefinitions {
 
     @When("user enters below correct credentials")
     public void userEntersBelowCorrectCredentials(Map<String, String> credentials) {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
 
         wtLoginPage.inputUsername.sendKeys(credentials.get("username"));
         wtLoginPage.inputPassword.sendKeys(credentials.get("password"));
 
     }
 
+    /*
+    Only the first scenario of the thread logs in through the UI,
+    the next ones get the same session back from the LoginStateCache and start on the orders page.
+     */
     @Given("user is already logged in to The Web table app")
     public void user_is_already_logged_in_to_the_web_table_app() {
 
-        Driver.getDriver().get("https://web-table-2.cydeo.com/login");
-        wtLoginPage.login();
+        LoginStateCache.login(ConfigurationReader.getWebTableUrl() + "/login", "Test", wtLoginPage::login);
 
     }
-    WT_OrderPage orderPage = new WT_OrderPage();
+    WT_OrderPage orderPage = Pages.get(WT_OrderPage.class);
 
     @When("user is on the Order page")
     public void user_is_on_the_order_page() {
         orderPage.orderLink.click();
-        BrowserUtils.sleep(2);
+        BrowserUtils.waitForIdle();
     }
     @Then("user sees below options under product dropdown")
     public void user_sees_below_options_under_product_dropdown(List<String> expectedOptions) {
@@ -179,13 +204,23 @@ public class WebTable_StepDefinitions {
 
     }
 
+    /*
+    The whole form is filled at once, the keys of the table are the names of the fields (see WT_OrderPage.fillOrderForm)
+     */
+    @And("user fills the order form")
+    public void userFillsTheOrderForm(Map<String, String> fields) {
+
+        orderPage.fillOrderForm(fields);
+
+    }
+
     @And("user clicks to process order button")
     public void userClicksToProcessOrderButton() {
         orderPage.processButton.click();
 
     }
 
-    WT_ViewAllOrdersPage viewAllOrdersPage = new WT_ViewAllOrdersPage();
+    WT_ViewAllOrdersPage viewAllOrdersPage = Pages.get(WT_ViewAllOrdersPage.class);
 
     @Then("user should see {string} in the first row of the web table")
     public void userShouldSeeInTheFirstRowOfTheWebTable(String expectedName) {
@@ -1,25 +1,33 @@
 package com.cydeo.step_definitions;
 
+import com.cydeo.pages.Pages;
 import com.cydeo.pages.WikiResultPage;
 import com.cydeo.pages.WikiSearchPage;
-import com.cydeo.utilities.BrowserUtils;
 import com.cydeo.utilities.Driver;
+import com.cydeo.utilities.PageSnapshot;
+import com.cydeo.utilities.ScenarioCheckpoints;
+import com.cydeo.utilities.SoftAssertions;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
-import org.junit.Assert;
 
 public class Wiki_StepDefinitions {
 
-    WikiSearchPage wikiSearchPage = new WikiSearchPage();
+    WikiSearchPage wikiSearchPage = Pages.get(WikiSearchPage.class);
 
     @Given("User is on Wikipedia home page")
     public void user_is_on_wikipedia_home_page() {
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
         Driver.getDriver().get("https://www.wikipedia.org");
     }
 
     @When("User types {string} in the wiki search box")
     public void userTypesInTheWikiSearchBox(String searchValue) {
+        if (ScenarioCheckpoints.skipInput()) {
+            return;
+        }
 
         wikiSearchPage.searchBox.sendKeys(searchValue);
 
@@ -27,35 +35,57 @@ public class Wiki_StepDefinitions {
 
     @When("User clicks wiki search button")
     public void user_clicks_wiki_search_button() {
+        if (ScenarioCheckpoints.skipNavigation()) {
+            return;
+        }
 
         wikiSearchPage.searchButton.click();
 
     }
 
+    WikiResultPage wikiResultPage = Pages.get(WikiResultPage.class);
+
+    /*
+    Title, URL and the named headers are read in one call, the Then steps below assert against this snapshot.
+    Their failures are collected and reported together at the end of the scenario (see SoftAssertions).
+    The capture waits only for the headers it names, e.g. a title check does not depend on the image header.
+     */
+    @When("User captures the wiki result page")
+    public void userCapturesTheWikiResultPage() {
+
+        PageSnapshot.capture(wikiResultPage);
+
+    }
+
+    //e.g. "mainHeader, imageHeader", the @FindBy fields of WikiResultPage
+    @When("User captures the wiki result page with {string}")
+    public void userCapturesTheWikiResultPageWith(String fieldNames) {
+
+        PageSnapshot.capture(wikiResultPage, fieldNames.split("\\s*,\\s*"));
+
+    }
+
     @Then("User sees {string} is in the wiki title")
     public void userSeesIsInTheWikiTitle(String expectedInTitle) {
 
-        BrowserUtils.verifyTitleContains(expectedInTitle);
+        String actualTitle = PageSnapshot.current().title();
 
-    }
+        SoftAssertions.assertTrue("Title should contain: " + expectedInTitle + ", but was: " + actualTitle,
+                actualTitle.contains(expectedInTitle));
 
-    WikiResultPage wikiResultPage = new WikiResultPage();
+    }
 
     @Then("User sees {string} is in the main header")
     public void userSeesIsInTheMainHeader(String expectedText) {
 
-        String actualHeaderText = wikiResultPage.mainHeader.getText();
-
-        Assert.assertEquals(actualHeaderText, expectedText);
+        SoftAssertions.assertEquals("Main header", expectedText, PageSnapshot.current().text("mainHeader"));
 
     }
 
     @Then("User sees {string} is in the image header")
     public void userSeesIsInTheImageHeader(String expectedText) {
-        //String actualText = wikiResultPage.imageHeader.getText();
-        //Assert.assertEquals(actualText, expectedText);
 
-        Assert.assertEquals(wikiResultPage.imageHeader.getText(), expectedText);
+        SoftAssertions.assertEquals("Image header", expectedText, PageSnapshot.current().text("imageHeader"));
 
     }
 }
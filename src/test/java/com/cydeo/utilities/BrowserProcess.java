@@ -0,0 +1,71 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/*
+Finds the operating system process of a browser session, so we can log how much memory a browser profile uses.
+Resident memory is read from /proc, so it is only available on Linux (our CI agents); other systems report -1.
+ */
+class BrowserProcess {
+
+    private BrowserProcess() {}
+
+    /**
+     * @return resident memory (in KB) of the browser and all of its child processes, or -1 if it can not be measured
+     */
+    static long residentMemoryKb(WebDriver driver) {
+        if (!(driver instanceof HasCapabilities) || !Files.isDirectory(Path.of("/proc"))) {
+            return -1;
+        }
+        return findBrowser(((HasCapabilities) driver).getCapabilities())
+                .map(browser -> Stream.concat(Stream.of(browser), browser.descendants())
+                        .mapToLong(BrowserProcess::residentMemoryKb)
+                        .sum())
+                .orElse(-1L);
+    }
+
+    private static Optional<ProcessHandle> findBrowser(Capabilities capabilities) {
+
+        //Firefox reports its own process id
+        Object firefoxPid = capabilities.getCapability("moz:processID");
+        if (firefoxPid instanceof Number) {
+            return ProcessHandle.of(((Number) firefoxPid).longValue());
+        }
+
+        //Chrome reports its profile directory, the main browser process is the one without a "--type" argument
+        Object chrome = capabilities.getCapability("chrome");
+        if (chrome instanceof Map && ((Map<?, ?>) chrome).get("userDataDir") != null) {
+            String userDataDir = "--user-data-dir=" + ((Map<?, ?>) chrome).get("userDataDir");
+            return ProcessHandle.allProcesses()
+                    .filter(process -> process.info().commandLine()
+                            .map(command -> command.contains(userDataDir) && !command.contains("--type="))
+                            .orElse(false))
+                    .findFirst();
+        }
+
+        return Optional.empty();
+    }
+
+    private static long residentMemoryKb(ProcessHandle process) {
+        try (Stream<String> lines = Files.lines(Path.of("/proc", String.valueOf(process.pid()), "status"))) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                    .map(line -> line.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst()
+                    .orElse(0);
+        } catch (IOException | RuntimeException e) {
+            //process already exited
+            return 0;
+        }
+    }
+
+}
@@ -6,12 +6,14 @@ import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class BrowserUtils {
 
@@ -23,11 +25,88 @@ public class BrowserUtils {
      */
     public static void sleep(int second){
         second *= 1000;
+        long start = System.nanoTime();
         try{
             Thread.sleep(second);
         }catch (InterruptedException e){
 
         }
+        TimingRecorder.recordSleep(System.nanoTime() - start);
+    }
+
+    /*
+    The fixed sleeps we replaced with waitForIdle() were 2 seconds each.
+    We keep the count and the real time spent, so we can report how much time was saved.
+     */
+    private static final long REPLACED_SLEEP_MILLIS = 2000;
+    private static final AtomicLong idleWaitCount = new AtomicLong();
+    private static final AtomicLong idleWaitMillis = new AtomicLong();
+
+    /*
+    Installs (only once per page) a counter for pending fetch/XHR requests, then reports the page as idle
+    when the document is loaded, no request is pending, and two animation frames were rendered.
+    setTimeout is the fallback for background tabs where animation frames are throttled.
+     */
+    private static final String IDLE_SCRIPT =
+            "var done = arguments[arguments.length - 1];" +
+            "if (!window.__idleTracker) {" +
+            "  var tracker = window.__idleTracker = { pending: 0 };" +
+            "  if (window.fetch) {" +
+            "    var originalFetch = window.fetch;" +
+            "    window.fetch = function () {" +
+            "      tracker.pending++;" +
+            "      return originalFetch.apply(this, arguments).finally(function () { tracker.pending--; });" +
+            "    };" +
+            "  }" +
+            "  var originalSend = XMLHttpRequest.prototype.send;" +
+            "  XMLHttpRequest.prototype.send = function () {" +
+            "    tracker.pending++;" +
+            "    this.addEventListener('loadend', function () { tracker.pending--; });" +
+            "    return originalSend.apply(this, arguments);" +
+            "  };" +
+            "}" +
+            "if (document.readyState !== 'complete' || window.__idleTracker.pending > 0) { done(false); return; }" +
+            "var finished = false;" +
+            "var finish = function () { if (!finished) { finished = true; done(true); } };" +
+            "requestAnimationFrame(function () { requestAnimationFrame(finish); });" +
+            "setTimeout(finish, 100);";
+
+    /**
+     * Waits until the page is idle: document.readyState is complete, there are no pending fetch/XHR requests,
+     * and animation frames are rendered. Returns as soon as the page settles, or after "idle.maxSeconds"
+     * from configuration.properties. It never fails the test, it is only used instead of fixed sleeps.
+     */
+    public static void waitForIdle() {
+        waitForIdle(ConfigurationReader.getInt("idle.maxSeconds"));
+    }
+
+    /**
+     * Same as waitForIdle(), with the given upper bound.
+     *
+     * @param maxSeconds maximum time to wait for the page to settle
+     */
+    public static void waitForIdle(int maxSeconds) {
+        long start = System.currentTimeMillis();
+        try {
+            WaitEngine.until(driver -> (Boolean) ((JavascriptExecutor) driver).executeAsyncScript(IDLE_SCRIPT), Duration.ofSeconds(maxSeconds));
+        } catch (TimeoutException e) {
+            System.out.println("Page did not become idle in " + maxSeconds + " seconds, continuing.");
+        } catch (WebDriverException e) {
+            //e.g. the browser does not support async scripts on this page, nothing to wait for
+        } finally {
+            idleWaitCount.incrementAndGet();
+            idleWaitMillis.addAndGet(System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @return summary of how much time waitForIdle() saved compared to the fixed sleeps it replaced
+     */
+    public static String idleWaitReport() {
+        long count = idleWaitCount.get();
+        long waited = idleWaitMillis.get();
+        long saved = count * REPLACED_SLEEP_MILLIS - waited;
+        return "Idle waits: " + count + ", waited " + waited + " ms, saved " + saved + " ms compared to fixed sleeps";
     }
 
     public static void switchWindowAndVerify(String expectedInURL, String expectedInTitle){
@@ -62,11 +141,7 @@ public class BrowserUtils {
     and waits for that WebElement not to be displayed on the page
      */
     public static void waitForInvisibilityOf(WebElement target){
-        //Create the object of 'WebDriverWait' class, and set up the constructor args
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(10));
-
-        //use the 'wait' object with the proper syntax to create explicit wait conditions.
-        wait.until(ExpectedConditions.invisibilityOf(target));
+        WaitEngine.until(ExpectedConditions.invisibilityOf(target));
     }
 
     /*
@@ -74,20 +149,23 @@ public class BrowserUtils {
     and waits for that Title to contain given String value.
      */
     public static void waitForTitleContains(String title){
-        //Create the object of 'WebDriverWait' class, and set up the constructor args
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(10));
-
-        //use the 'wait' object with the proper syntax to create explicit wait conditions.
-        wait.until(ExpectedConditions.titleContains(title));
+        WaitEngine.until(ExpectedConditions.titleContains(title));
     }
 
     /**
      * This method accepts a dropdown element and returns a List<String> that contains all options values as String.
+     * All the option texts are read with one JavaScript call instead of one getText() call per option.
      * @param dropdownElement
      * @return actualMonth_as_STRING
      */
     public static List<String> dropdownOptions_as_STRING(WebElement dropdownElement){
 
+        List<String> batched = executeBatchScript(OPTION_TEXTS_SCRIPT, dropdownElement);
+        if (batched != null) {
+            return batched;
+        }
+
+        //fallback if JavaScript can not be executed
         Select month = new Select(dropdownElement);
         //Storing all the ACTUAL options into a List of WebElements
         List<WebElement> actualMonth_as_WEBELEMENT = month.getOptions();
@@ -106,12 +184,131 @@ public class BrowserUtils {
 
     }
 
+    /**
+     * Clicks the radio button whose "value" attribute matches (ignoring case).
+     * All the values are read with one JavaScript call, and the loop stops at the first match.
+     */
     public static void clickRadioButton(List<WebElement> radioButtons, String attributeValue){
-        for (WebElement each : radioButtons) {
-            if(each.getAttribute("value").equalsIgnoreCase(attributeValue)){
-                each.click();
+        List<String> values = getElementsAttribute(radioButtons, "value");
+        for (int i = 0; i < values.size(); i++) {
+            if (attributeValue.equalsIgnoreCase(values.get(i))) {
+                radioButtons.get(i).click();
+                return;
             }
         }
+        throw new NoSuchElementException("No radio button with value '" + attributeValue + "' in " + values);
+    }
+
+    /*
+    Fills many fields of the page with one JavaScript call, the way a user would leave them:
+    - text inputs get the value through the native setter (so frameworks like React notice it), then "input" and "change" events
+    - radio buttons and checkboxes are clicked (value matched ignoring case), so their own events fire
+    - dropdowns select the option by value or by visible text
+    Returns the value every field has afterwards (null if there is no such field), so it can be verified.
+     */
+    private static final String FILL_FORM_SCRIPT =
+            "var values = arguments[0], result = {};" +
+            "Object.keys(values).forEach(function (name) {" +
+            "  var value = String(values[name]);" +
+            "  var fields = document.querySelectorAll('[name=\"' + CSS.escape(name) + '\"]');" +
+            "  if (!fields.length) { result[name] = null; return; }" +
+            "  var field = fields[0];" +
+            "  if (field.type === 'radio' || field.type === 'checkbox') {" +
+            "    var match = Array.prototype.find.call(fields, function (f) { return f.value.toLowerCase() === value.toLowerCase(); });" +
+            "    if (match && !match.checked) { match.click(); }" +
+            "    result[name] = match && match.checked ? value : null;" +
+            "    return;" +
+            "  }" +
+            "  if (field.tagName === 'SELECT') {" +
+            "    var option = Array.prototype.find.call(field.options, function (o) { return o.value === value || o.text.trim() === value; });" +
+            "    if (option) { field.value = option.value; }" +
+            "  } else {" +
+            "    var setter = Object.getOwnPropertyDescriptor(Object.getPrototypeOf(field), 'value').set;" +
+            "    setter.call(field, value);" +
+            "  }" +
+            "  field.dispatchEvent(new Event('input', { bubbles: true }));" +
+            "  field.dispatchEvent(new Event('change', { bubbles: true }));" +
+            "  var selected = field.tagName === 'SELECT' ? field.selectedOptions[0] : null;" +
+            "  result[name] = selected && selected.text.trim() === value ? value : field.value;" +
+            "});" +
+            "return result;";
+
+    /**
+     * Fills the fields of the current page, found by their "name" attribute, with one JavaScript call instead of
+     * one sendKeys() per field. Every field is read back and verified; a field the script could not set
+     * (or JavaScript is not available) is filled the slow way: typing with typeVerified(), clicking, or selecting.
+     *
+     * @param values      field name -> value, e.g. a DataTable of two columns; radio buttons and dropdowns take the value or visible text
+     * @param typedFields fields that need real keystrokes (e.g. input masks, key listeners), they are always typed
+     */
+    @SuppressWarnings("unchecked")
+    public static void fillForm(Map<String, String> values, String... typedFields){
+        Map<String, String> scripted = new LinkedHashMap<>(values);
+        List<String> slow = new ArrayList<>();
+        for (String each : typedFields) {
+            if (scripted.remove(each) != null) {
+                slow.add(each);
+            }
+        }
+
+        if (!scripted.isEmpty()) {
+            Map<String, Object> actual = null;
+            if (Driver.getDriver() instanceof JavascriptExecutor) {
+                try {
+                    Object result = ((JavascriptExecutor) Driver.getDriver()).executeScript(FILL_FORM_SCRIPT, scripted);
+                    if (result instanceof Map) {
+                        actual = (Map<String, Object>) result;
+                    }
+                } catch (JavascriptException | UnsupportedCommandException e) {
+                    //filled one by one below
+                }
+            }
+            for (Map.Entry<String, String> each : scripted.entrySet()) {
+                if (actual == null || !each.getValue().equals(actual.get(each.getKey()))) {
+                    slow.add(each.getKey());
+                }
+            }
+        }
+
+        for (String name : slow) {
+            fillField(name, values.get(name));
+        }
+    }
+
+    private static void fillField(String name, String value){
+        List<WebElement> fields = Driver.getDriver().findElements(By.name(name));
+        if (fields.isEmpty()) {
+            throw new NoSuchElementException("No form field with name '" + name + "'");
+        }
+        WebElement field = fields.get(0);
+        String type = field.getDomAttribute("type");
+        if ("radio".equalsIgnoreCase(type) || "checkbox".equalsIgnoreCase(type)) {
+            clickRadioButton(fields, value);
+        } else if ("select".equalsIgnoreCase(field.getTagName())) {
+            new Select(field).selectByVisibleText(value);
+        } else {
+            typeVerified(field, value);
+        }
+    }
+
+    /**
+     * Types the text with real keystrokes and checks the field really has it afterwards.
+     * If the page lost or changed some keys (e.g. it was still rendering), the field is cleared and typed once more.
+     *
+     * @param element input or textarea
+     * @param text    text to type, replacing what is in the field
+     */
+    public static void typeVerified(WebElement element, String text){
+        String actual = null;
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            element.clear();
+            element.sendKeys(text);
+            actual = element.getDomProperty("value");
+            if (text.equals(actual)) {
+                return;
+            }
+        }
+        Assert.assertEquals("Typed text of " + element, text, actual);
     }
 
     /**
@@ -147,13 +344,60 @@ public class BrowserUtils {
         actions.moveToElement(element).perform();
     }
 
+    /*
+    Scripts used to read many elements with a single WebDriver call.
+    Every getText() is a separate round trip to the browser, so for long lists and tables we read everything at once.
+     */
+    private static final String ELEMENT_TEXTS_SCRIPT =
+            "return Array.prototype.map.call(arguments[0], function (e) { return (e.innerText || '').trim(); });";
+    private static final String ELEMENT_ATTRIBUTES_SCRIPT =
+            "var name = arguments[1];" +
+            "return Array.prototype.map.call(arguments[0], function (e) { return e.getAttribute(name); });";
+    private static final String OPTION_TEXTS_SCRIPT =
+            "return Array.prototype.map.call(arguments[0].options, function (o) { return o.text.trim(); });";
+
+    /**
+     * Executes one of the batch scripts above.
+     *
+     * @return values returned by the script, or null if JavaScript can not be executed (caller should fall back)
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> executeBatchScript(String script, Object... args) {
+        if (!(Driver.getDriver() instanceof JavascriptExecutor)) {
+            return null;
+        }
+        try {
+            Object result = ((JavascriptExecutor) Driver.getDriver()).executeScript(script, args);
+            if (!(result instanceof List)) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            for (Object each : (List<Object>) result) {
+                values.add(each == null ? null : each.toString());
+            }
+            return values;
+        } catch (JavascriptException | UnsupportedCommandException e) {
+            return null;
+        }
+    }
+
     /**
      * return a list of string from a list of elements
+     * Texts are read with one JavaScript call, or one getText() per element if JavaScript is not available.
      *
      * @param list of webelements
      * @return list of string
      */
     public static List<String> getElementsText(List<WebElement> list) {
+        if (list.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> batched = executeBatchScript(ELEMENT_TEXTS_SCRIPT, list);
+        if (batched != null) {
+            return batched;
+        }
+
         List<String> elemTexts = new ArrayList<>();
         for (WebElement el : list) {
             elemTexts.add(el.getText());
@@ -170,12 +414,31 @@ public class BrowserUtils {
     public static List<String> getElementsText(By locator) {
 
         List<WebElement> elems = Driver.getDriver().findElements(locator);
-        List<String> elemTexts = new ArrayList<>();
+        return getElementsText(elems);
+    }
 
-        for (WebElement el : elems) {
-            elemTexts.add(el.getText());
+    /**
+     * return a list of given attribute values from a list of elements, read with one JavaScript call
+     *
+     * @param list of webelements
+     * @param attributeName name of the HTML attribute
+     * @return list of attribute values (null if an element does not have the attribute)
+     */
+    public static List<String> getElementsAttribute(List<WebElement> list, String attributeName) {
+        if (list.isEmpty()) {
+            return new ArrayList<>();
         }
-        return elemTexts;
+
+        List<String> batched = executeBatchScript(ELEMENT_ATTRIBUTES_SCRIPT, list, attributeName);
+        if (batched != null) {
+            return batched;
+        }
+
+        List<String> values = new ArrayList<>();
+        for (WebElement el : list) {
+            values.add(el.getDomAttribute(attributeName));
+        }
+        return values;
     }
 
     /**
@@ -184,11 +447,13 @@ public class BrowserUtils {
      * @param seconds
      */
     public static void waitFor(int seconds) {
+        long start = System.nanoTime();
         try {
             Thread.sleep(seconds * 1000);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        TimingRecorder.recordSleep(System.nanoTime() - start);
     }
 
     /**
@@ -199,8 +464,7 @@ public class BrowserUtils {
      * @return
      */
     public static WebElement waitForVisibility(WebElement element, int time) {
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time));
-        return wait.until(ExpectedConditions.visibilityOf(element));
+        return WaitEngine.until(ExpectedConditions.visibilityOf(element), Duration.ofSeconds(time));
     }
 
     /**
@@ -211,8 +475,7 @@ public class BrowserUtils {
      * @return
      */
     public static WebElement waitForVisibility(By locator, int time) {
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time));
-        return wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
+        return WaitEngine.until(ExpectedConditions.visibilityOfElementLocated(locator), Duration.ofSeconds(time));
     }
 
     /**
@@ -223,8 +486,7 @@ public class BrowserUtils {
      * @return
      */
     public static WebElement waitForClickablility(WebElement element, int time) {
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time));
-        return wait.until(ExpectedConditions.elementToBeClickable(element));
+        return WaitEngine.until(ExpectedConditions.elementToBeClickable(element), Duration.ofSeconds(time));
     }
 
     /**
@@ -235,8 +497,7 @@ public class BrowserUtils {
      * @return
      */
     public static WebElement waitForClickablility(By locator, int time) {
-        WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time));
-        return wait.until(ExpectedConditions.elementToBeClickable(locator));
+        return WaitEngine.until(ExpectedConditions.elementToBeClickable(locator), Duration.ofSeconds(time));
     }
 
     /**
@@ -251,8 +512,7 @@ public class BrowserUtils {
             }
         };
         try {
-            WebDriverWait wait = new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time));
-            wait.until(expectation);
+            WaitEngine.until(expectation, Duration.ofSeconds(time));
         } catch (Throwable error) {
             error.printStackTrace();
         }
@@ -266,11 +526,12 @@ public class BrowserUtils {
      */
     public static void verifyElementDisplayed(By by) {
         try {
-            Assert.assertTrue("Element not visible: " + by, Driver.getDriver().findElement(by).isDisplayed());
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
-            Assert.fail("Element not found: " + by);
-
+            WaitEngine.until(ExpectedConditions.visibilityOfElementLocated(by));
+        } catch (TimeoutException e) {
+            if (Driver.getDriver().findElements(by).isEmpty()) {
+                Assert.fail("Element not found: " + by);
+            }
+            Assert.fail("Element not visible: " + by);
         }
     }
 
@@ -281,11 +542,15 @@ public class BrowserUtils {
      * @throws AssertionError the element matching the provided locator is displayed
      */
     public static void verifyElementNotDisplayed(By by) {
+        //findElements does not wait (no implicit wait), so an absent element is confirmed immediately
+        List<WebElement> elements = Driver.getDriver().findElements(by);
+        if (elements.isEmpty()) {
+            return;
+        }
         try {
-            Assert.assertFalse("Element should not be visible: " + by, Driver.getDriver().findElement(by).isDisplayed());
-        } catch (NoSuchElementException e) {
-            e.printStackTrace();
-
+            Assert.assertFalse("Element should not be visible: " + by, elements.get(0).isDisplayed());
+        } catch (StaleElementReferenceException e) {
+            //element was removed from the page in the meantime
         }
     }
 
@@ -308,32 +573,16 @@ public class BrowserUtils {
 
 
     /**
-     * Waits for element to be not stale
+     * Waits for element to be not stale, at most "element.retry.timeout".
+     * A page element is located again from its @FindBy, see ElementRecovery.
      *
      * @param element
      */
     public static void waitForStaleElement(WebElement element) {
-        int y = 0;
-        while (y <= 15) {
-            if (y == 1)
-                try {
-                    element.isDisplayed();
-                    break;
-                } catch (StaleElementReferenceException st) {
-                    y++;
-                    try {
-                        Thread.sleep(300);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                } catch (WebDriverException we) {
-                    y++;
-                    try {
-                        Thread.sleep(300);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
+        try {
+            ElementRecovery.retry(ElementRecovery.locatorOf(element), ElementRecovery.defaultTimeout(), element::isDisplayed);
+        } catch (StaleElementReferenceException e) {
+            //still stale at the deadline, the next call on the element fails with it
         }
     }
 
@@ -407,20 +656,15 @@ public class BrowserUtils {
     }
 
     /**
-     * attempts to click on provided element until given time runs out
+     * attempts to click on provided element until given time runs out,
+     * recovering from intercepted and not interactable clicks (see ElementRecovery)
      *
      * @param element
-     * @param timeout
+     * @param timeout in seconds
+     * @throws WebDriverException the last error of the click, if it did not succeed in time
      */
     public static void clickWithTimeOut(WebElement element, int timeout) {
-        for (int i = 0; i < timeout; i++) {
-            try {
-                element.click();
-                return;
-            } catch (WebDriverException e) {
-                waitFor(1);
-            }
-        }
+        ElementRecovery.run(ElementRecovery.locatorOf(element), Duration.ofSeconds(timeout), element::click);
     }
 
     /**
@@ -448,30 +692,16 @@ public class BrowserUtils {
 
     /**
      * This method will recover in case of exception after unsuccessful the click,
-     * and will try to click on element again.
+     * and will try to click on element again. Selenium looks for the element again before every attempt,
+     * waiting for it only until the deadline of the whole click.
      *
      * @param by
-     * @param attempts
+     * @param attempts maximum time in seconds (it used to be one attempt per second)
+     * @throws WebDriverException the last error of the click, if it did not succeed in time
      */
     public static void clickWithWait(By by, int attempts) {
-        int counter = 0;
-        //click on element as many as you specified in attempts parameter
-        while (counter < attempts) {
-            try {
-                //selenium must look for element again
-                clickWithJS(Driver.getDriver().findElement(by));
-                //if click is successful - then break
-                break;
-            } catch (WebDriverException e) {
-                //if click failed
-                //print exception
-                //print attempt
-                e.printStackTrace();
-                ++counter;
-                //wait for 1 second, and try to click again
-                waitFor(1);
-            }
-        }
+        ElementRecovery.run(by.toString(), Duration.ofSeconds(attempts),
+                () -> clickWithJS(WaitEngine.until(ExpectedConditions.presenceOfElementLocated(by), ElementRecovery.remaining())));
     }
 
     /**
@@ -481,7 +711,7 @@ public class BrowserUtils {
      * @param time
      */
     public static void waitForPresenceOfElement(By by, long time) {
-        new WebDriverWait(Driver.getDriver(), Duration.ofSeconds(time)).until(ExpectedConditions.presenceOfElementLocated(by));
+        WaitEngine.until(ExpectedConditions.presenceOfElementLocated(by), Duration.ofSeconds(time));
     }
 
 
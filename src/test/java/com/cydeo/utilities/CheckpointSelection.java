@@ -0,0 +1,47 @@
+package com.cydeo.utilities;
+
+import io.cucumber.tagexpressions.Expression;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+Tells ScenarioCheckpoints which scenarios of the parsed feature files will actually run.
+
+Cucumber emits every scenario of a feature file, also the ones left out by ShardFilter, by the IDE running one scenario,
+or by "cucumber.filter.tags". A prefix shared only with such scenarios would be captured for nothing, so only the
+scenarios of the test plan that match the tags are counted. ("cucumber.filter.name" is not checked, like in ShardFilter.)
+
+It is registered in META-INF/services. The test plan is known before the engines run, so before the first feature is parsed.
+ */
+public class CheckpointSelection implements TestExecutionListener {
+
+    @Override
+    public void testPlanExecutionStarted(TestPlan testPlan) {
+        Expression tags = ShardFilter.tagExpression();
+        Set<String> selected = new HashSet<>();
+        Deque<TestIdentifier> queue = new ArrayDeque<>(testPlan.getRoots());
+        while (!queue.isEmpty()) {
+            TestIdentifier each = queue.poll();
+            queue.addAll(testPlan.getChildren(each));
+            String key = ShardFilter.key(each.getSource());
+            if (each.getType() != TestDescriptor.Type.TEST || key == null) {
+                continue;
+            }
+            List<String> scenarioTags = each.getTags().stream().map(tag -> "@" + tag.getName()).collect(Collectors.toList());
+            if (tags.evaluate(scenarioTags)) {
+                selected.add(key);
+            }
+        }
+        ScenarioCheckpoints.select(selected);
+    }
+
+}
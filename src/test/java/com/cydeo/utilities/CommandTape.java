@@ -0,0 +1,332 @@
+package com.cydeo.utilities;
+
+import io.cucumber.java.Scenario;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.service.DriverCommandExecutor;
+import org.openqa.selenium.remote.service.DriverFinder;
+import org.openqa.selenium.remote.service.DriverService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Records the WebDriver commands of a scenario with a real browser, and replays them later without any browser.
+
+browser=recording: a real browser (recording.browser) is used, and every command with its response is written
+to <recording.dir>/<Feature>_<line>.ndjson when the scenario passes.
+browser=replay: there is no browser process, every command is answered from the recording of the scenario.
+The command must be the same as the recorded one, otherwise the scenario fails with a divergence,
+e.g. a step definition or page object started to locate, type or click something else.
+
+The recording is on the level of the W3C protocol (command name + parameters -> response),
+so everything above it (pages, BrowserUtils, waits) runs for real during the replay.
+
+To keep a recording independent of the other scenarios, browsers are never re-used and the login cache is off
+while recording or replaying. The URL of the local Web Table app is stored as a placeholder, because its port changes.
+ */
+public class CommandTape {
+
+    private CommandTape() {}
+
+    private static final String RECORDING = "recording";
+    private static final String REPLAY = "replay";
+    private static final String WEB_TABLE_PLACEHOLDER = "${webTable.url}";
+
+    private static final ErrorCodes errorCodes = new ErrorCodes();
+
+    //recording or replay of the scenario that is running on the thread
+    private static final ThreadLocal<Tape> tapes = new ThreadLocal<>();
+
+    private static final AtomicInteger sessions = new AtomicInteger();
+    private static final AtomicInteger scenarios = new AtomicInteger();
+    private static final AtomicLong commands = new AtomicLong();
+    private static final AtomicInteger divergences = new AtomicInteger();
+
+    private static class Tape {
+        final String name;
+        final Path file;
+        final String webTableUrl;
+        final List<Map<String, Object>> entries = new ArrayList<>();
+        int position;
+        String divergence;
+
+        Tape(String name, Path file, String webTableUrl) {
+            this.name = name;
+            this.file = file;
+            //the recordings are JSON text, where the URL is escaped ("/" is written as \u002f)
+            String json = toJson(webTableUrl);
+            this.webTableUrl = json.substring(1, json.length() - 1);
+        }
+    }
+
+    /**
+     * @return true if the configured browser records or replays the scenarios
+     */
+    public static boolean isActive() {
+        return isRecording() || isReplaying();
+    }
+
+    public static boolean isRecording() {
+        return RECORDING.equals(ConfigurationReader.getProperty("browser"));
+    }
+
+    public static boolean isReplaying() {
+        return REPLAY.equals(ConfigurationReader.getProperty("browser"));
+    }
+
+    /**
+     * Real browser whose commands are recorded into the tape of the running scenario.
+     *
+     * @param service      driver service of the browser, e.g. ChromeDriverService.createDefaultService()
+     * @param capabilities options of the browser
+     */
+    static WebDriver recordingDriver(DriverService service, Capabilities capabilities) {
+        service.setExecutable(DriverFinder.getPath(service, capabilities).getDriverPath());
+        return new RemoteWebDriver(new RecordingExecutor(new DriverCommandExecutor(service)), capabilities);
+    }
+
+    /**
+     * Driver without a browser, every command is answered from the tape of the running scenario.
+     */
+    static WebDriver replayDriver() {
+        return new RemoteWebDriver(new ReplayExecutor(), new MutableCapabilities());
+    }
+
+    /**
+     * Call it before every scenario. Loads the recording of the scenario when replaying.
+     */
+    public static void startScenario(Scenario scenario) {
+        if (!isActive()) {
+            return;
+        }
+        //e.g. classpath:features/WebTable.feature, line 12 -> WebTable_12
+        String uri = scenario.getUri().toString();
+        String fileName = uri.substring(Math.max(uri.lastIndexOf('/'), uri.lastIndexOf(':')) + 1).replace(".feature", "")
+                + "_" + scenario.getLine();
+        Tape tape = new Tape(fileName, Paths.get(ConfigurationReader.getProperty("recording.dir"), fileName + ".ndjson"),
+                ConfigurationReader.getWebTableUrl());
+
+        if (isReplaying() && Files.exists(tape.file)) {
+            try {
+                for (String line : Files.readAllLines(tape.file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        tape.entries.add(new Json().toType(line.replace(WEB_TABLE_PLACEHOLDER, tape.webTableUrl), Json.MAP_TYPE));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read the recording " + tape.file, e);
+            }
+        }
+        tapes.set(tape);
+        scenarios.incrementAndGet();
+    }
+
+    /**
+     * Call it after every scenario, once its browser is closed.
+     * Saves the recording of a passed scenario, or fails the scenario if the replay did not use the whole recording.
+     */
+    public static void finishScenario(Scenario scenario) {
+        Tape tape = tapes.get();
+        tapes.remove();
+        if (tape == null) {
+            return;
+        }
+
+        if (isRecording()) {
+            if (scenario.isFailed()) {
+                System.out.println("Recording of " + tape.name + " is not saved, the scenario failed");
+            } else if (!tape.entries.isEmpty()) {
+                save(tape);
+            }
+        } else if (tape.divergence != null) {
+            //the divergence may have been swallowed on the way, e.g. by a wait that ignores exceptions
+            if (!scenario.isFailed()) {
+                throw new WebDriverException(tape.divergence);
+            }
+        } else if (!scenario.isFailed() && tape.position < tape.entries.size()) {
+            throw diverged(tape, "the scenario sent only " + tape.position + " of the " + tape.entries.size() + " recorded commands");
+        }
+    }
+
+    private static void save(Tape tape) {
+        try {
+            Files.createDirectories(tape.file.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(tape.file, StandardCharsets.UTF_8)) {
+                for (Map<String, Object> each : tape.entries) {
+                    writer.write(toJson(each).replace(tape.webTableUrl, WEB_TABLE_PLACEHOLDER));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not save the recording " + tape.file + ": " + e.getMessage());
+        }
+    }
+
+    //starting and ending a session is not part of the scenario, the browser is launched when a step first needs it
+    private static boolean isSessionCommand(Command command) {
+        return DriverCommand.NEW_SESSION.equals(command.getName()) || DriverCommand.QUIT.equals(command.getName());
+    }
+
+    private static class RecordingExecutor implements CommandExecutor {
+
+        private final CommandExecutor delegate;
+
+        RecordingExecutor(CommandExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Response execute(Command command) throws IOException {
+            Tape tape = tapes.get();
+            if (tape == null || isSessionCommand(command)) {
+                return delegate.execute(command);
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("command", command.getName());
+            entry.put("parameters", normalize(command.getParameters()));
+            Response response;
+            try {
+                response = delegate.execute(command);
+            } catch (WebDriverException e) {
+                entry.put("state", errorCodes.toState(errorCodes.toStatusCode(e)));
+                entry.put("error", firstLine(e.getMessage()));
+                tape.entries.add(entry);
+                commands.incrementAndGet();
+                throw e;
+            }
+
+            if (response.getValue() instanceof Throwable) {
+                entry.put("state", response.getState());
+                entry.put("error", firstLine(((Throwable) response.getValue()).getMessage()));
+            } else {
+                entry.put("state", ErrorCodes.SUCCESS_STRING);
+                entry.put("value", normalize(response.getValue()));
+            }
+            tape.entries.add(entry);
+            commands.incrementAndGet();
+            return response;
+        }
+    }
+
+    private static class ReplayExecutor implements CommandExecutor {
+
+        private final SessionId sessionId = new SessionId("replay-" + sessions.incrementAndGet());
+
+        @Override
+        public Response execute(Command command) {
+            Response response = new Response(sessionId);
+            response.setState(ErrorCodes.SUCCESS_STRING);
+
+            if (DriverCommand.NEW_SESSION.equals(command.getName())) {
+                response.setValue(Map.of("browserName", REPLAY));
+                return response;
+            }
+            if (DriverCommand.QUIT.equals(command.getName())) {
+                return response;
+            }
+
+            Tape tape = tapes.get();
+            if (tape == null) {
+                throw new WebDriverException("The replay driver can only be used inside a scenario: " + command.getName());
+            }
+            if (tape.divergence != null) {
+                throw new WebDriverException("The replay of " + tape.name + " already diverged from the recording");
+            }
+            if (tape.position >= tape.entries.size()) {
+                throw diverged(tape, "unexpected command " + describe(command.getName(), normalize(command.getParameters()))
+                        + (tape.entries.isEmpty() ? ", there is no recording at " + tape.file : ", the recording has ended"));
+            }
+
+            Map<String, Object> expected = tape.entries.get(tape.position);
+            Object parameters = normalize(command.getParameters());
+            if (!command.getName().equals(expected.get("command")) || !Objects.equals(parameters, expected.get("parameters"))) {
+                throw diverged(tape, "command " + (tape.position + 1) + " was " + describe(command.getName(), parameters)
+                        + " but the recording has " + describe(expected.get("command"), expected.get("parameters")));
+            }
+            tape.position++;
+            commands.incrementAndGet();
+
+            //RemoteWebDriver passes a WebDriverException of the executor on as it is, with the same type the browser answered with
+            String state = (String) expected.get("state");
+            if (!ErrorCodes.SUCCESS_STRING.equals(state)) {
+                throw exception(state, (String) expected.get("error"));
+            }
+            response.setValue(expected.get("value"));
+            return response;
+        }
+    }
+
+    //the same exception type the browser answered with, e.g. NoSuchElementException
+    private static WebDriverException exception(String state, String message) {
+        try {
+            return errorCodes.getExceptionType(state).getConstructor(String.class).newInstance(message);
+        } catch (ReflectiveOperationException e) {
+            return new WebDriverException(message);
+        }
+    }
+
+    private static WebDriverException diverged(Tape tape, String reason) {
+        String message = "Replay of " + tape.name + " diverged from the recording: " + reason;
+        tape.divergence = message;
+        divergences.incrementAndGet();
+        System.out.println(message);
+        return new WebDriverException(message);
+    }
+
+    //parameters and responses are compared the way they are stored: as parsed JSON
+    private static Object normalize(Object value) {
+        return new Json().toType(toJson(value), Object.class);
+    }
+
+    private static String toJson(Object value) {
+        StringBuilder json = new StringBuilder();
+        new Json().newOutput(json).setPrettyPrint(false).write(value).close();
+        return json.toString();
+    }
+
+    private static String describe(Object name, Object parameters) {
+        String text = name + " " + toJson(parameters);
+        return text.length() > 200 ? text.substring(0, 200) + "..." : text;
+    }
+
+    private static String firstLine(String message) {
+        if (message == null) {
+            return "";
+        }
+        int newLine = message.indexOf('\n');
+        return newLine < 0 ? message : message.substring(0, newLine);
+    }
+
+    /**
+     * @return one line summary of the recorded or replayed scenarios and the divergences
+     */
+    public static String report() {
+        String mode = isRecording() ? RECORDING : isReplaying() ? REPLAY : "off";
+        return "CommandTape[" + mode + "] scenarios=" + scenarios.get() + ", commands=" + commands.get()
+                + ", divergences=" + divergences.get();
+    }
+
+}
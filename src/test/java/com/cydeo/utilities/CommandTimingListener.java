@@ -0,0 +1,40 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/*
+Measures every call made on the driver, its elements, navigation, options, etc.
+and reports it to the TimingRecorder, e.g. "WebElement.click" or "JavascriptExecutor.executeScript".
+ */
+class CommandTimingListener implements WebDriverListener {
+
+    private final ThreadLocal<Deque<Long>> startTimes = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        startTimes.get().push(System.nanoTime());
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        record(method);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        record(method);
+    }
+
+    private void record(Method method) {
+        Long start = startTimes.get().poll();
+        if (start != null) {
+            TimingRecorder.recordCommand(method.getDeclaringClass().getSimpleName() + "." + method.getName(), System.nanoTime() - start);
+        }
+    }
+
+}
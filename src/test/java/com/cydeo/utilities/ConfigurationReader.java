@@ -2,37 +2,208 @@ package com.cydeo.utilities;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 public class ConfigurationReader {
 
-    //1- Create the Properties object (create object)
-    //make it "private" so we are limiting access to the object
-    //"static" is to make sure its created and loaded before everything else.
-    private static Properties properties = new Properties();
+    private ConfigurationReader(){}
+
+    /*
+    Every key we support, with its default value.
+    A key that is not listed here can not be read or set, so a typo fails fast instead of silently using a default.
+     */
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("browser", "chrome");
+        DEFAULTS.put("browser.pageLoadStrategy", "normal");
+        DEFAULTS.put("browser.windowSize", "1920,1080");
+        DEFAULTS.put("browser.disableImages", "false");
+        DEFAULTS.put("parallel.threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        DEFAULTS.put("driver.pool.size", "");
+        DEFAULTS.put("driver.pool.maxUses", "10");
+        DEFAULTS.put("idle.maxSeconds", "5");
+        DEFAULTS.put("wait.timeoutSeconds", "10");
+        DEFAULTS.put("element.retry.timeout", "5s");
+        DEFAULTS.put("element.retry.backoff", "50ms");
+        DEFAULTS.put("retry.backoff", "2s");
+        DEFAULTS.put("shard", "");
+        DEFAULTS.put("shard.durations", "target/cucumber-timing/durations.json");
+        DEFAULTS.put("discovery.cache.enabled", "true");
+        DEFAULTS.put("discovery.cache.file", "target/cucumber-discovery/features.json");
+        DEFAULTS.put("login.cache.enabled", "true");
+        DEFAULTS.put("login.cache.ttl", "15m");
+        DEFAULTS.put("checkpoint.enabled", "false");
+        DEFAULTS.put("screenshot.quality", "0.7");
+        DEFAULTS.put("screenshot.dom", "false");
+        DEFAULTS.put("screenshot.consoleLogs", "false");
+        DEFAULTS.put("recording.browser", "chrome");
+        DEFAULTS.put("recording.dir", "src/test/resources/recordings");
+        DEFAULTS.put("network.block", "");
+        DEFAULTS.put("network.cache.patterns", "");
+        DEFAULTS.put("network.cache.dir", "src/test/resources/network-cache");
+        DEFAULTS.put("network.profile", "none");
+        DEFAULTS.put("network.store.mode", "off");
+        DEFAULTS.put("network.store.patterns", "");
+        DEFAULTS.put("network.store.dir", "src/test/resources/network-store");
+        DEFAULTS.put("network.store.maxAge", "7d");
+        DEFAULTS.put("webTable.env", "remote");
+        DEFAULTS.put("webTable.url", "https://web-table-2.cydeo.com");
+        DEFAULTS.put("webTable.local.port", "0");
+    }
+
+    /*
+    Immutable snapshot of the configuration, built only once when the class is loaded.
+    Each layer overrides the previous one:
+        1- configuration.properties file
+        2- environment variables, e.g. "driver.pool.maxUses" -> DRIVER_POOL_MAXUSES
+        3- system properties, e.g. mvn test -Dbrowser=firefox
+     */
+    private static final Map<String, String> configuration;
+
+    //per-thread overrides, e.g. to run different browser types in parallel threads
+    private static final ThreadLocal<Map<String, String>> threadOverrides = ThreadLocal.withInitial(HashMap::new);
 
     static{
 
-        try {
-            //2- Open file using FileInputStream (open file)
-            FileInputStream file = new FileInputStream("configuration.properties");
+        //1- Create the Properties object (create object)
+        Properties properties = new Properties();
+
+        //2- Open file using FileInputStream (open file), it is closed automatically by try-with-resources
+        try (FileInputStream file = new FileInputStream("configuration.properties")) {
             //3- Load the "properties" object with "file" (load properties)
             properties.load(file);
-
-            //close the file in the memory
-            file.close();
-
         } catch (IOException e) {
             System.out.println("FILE NOT FOUND WITH GIVEN PATH!!!");
             e.printStackTrace();
         }
+
+        Map<String, String> layers = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            layers.put(checkKnown(key), properties.getProperty(key).trim());
+        }
+        for (String key : DEFAULTS.keySet()) {
+            String fromEnvironment = System.getenv(key.toUpperCase().replace('.', '_'));
+            if (fromEnvironment != null) {
+                layers.put(key, fromEnvironment.trim());
+            }
+            String fromSystemProperty = System.getProperty(key);
+            if (fromSystemProperty != null) {
+                layers.put(key, fromSystemProperty.trim());
+            }
+        }
+        configuration = Map.copyOf(layers);
+    }
+
+    private static String checkKnown(String keyword){
+        if (!DEFAULTS.containsKey(keyword)){
+            throw new IllegalArgumentException("Unknown configuration key: '" + keyword + "'. Known keys: " + DEFAULTS.keySet());
+        }
+        return keyword;
     }
 
     //create a utility method to use the object to read
-    //4- Use "properties" object to read from the file (read properties)
+    //4- Use "configuration" snapshot to read the value (read properties)
 
+    /**
+     * Returns the value of the keyword. Blank values count as not set, and fall back to the default.
+     * @param keyword must be one of the known keys
+     * @return thread override, or the configured value, or the default value
+     */
     public static String getProperty(String keyword){
-        return properties.getProperty(keyword);
+        checkKnown(keyword);
+        String value = threadOverrides.get().get(keyword);
+        if (value == null || value.isEmpty()){
+            value = configuration.get(keyword);
+        }
+        if (value == null || value.isEmpty()){
+            value = DEFAULTS.get(keyword);
+        }
+        return value;
+    }
+
+    //same as above, but returns the defaultValue if the keyword has no value
+    public static String getProperty(String keyword, String defaultValue){
+        String value = getProperty(keyword);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    public static int getInt(String keyword){
+        return Integer.parseInt(getProperty(keyword));
+    }
+
+    public static boolean getBoolean(String keyword){
+        return Boolean.parseBoolean(getProperty(keyword));
+    }
+
+    /**
+     * Reads a duration. Plain numbers are seconds, and "500ms", "10s", "2m", "1h", "7d" or ISO-8601 ("PT10S") are also accepted.
+     */
+    public static Duration getDuration(String keyword){
+        String value = getProperty(keyword).toLowerCase();
+        if (value.startsWith("pt")){
+            return Duration.parse(value.toUpperCase());
+        }
+        if (value.endsWith("ms")){
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2).trim()));
+        }
+        if (value.endsWith("s")){
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+        }
+        if (value.endsWith("m")){
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+        }
+        if (value.endsWith("h")){
+            return Duration.ofHours(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+        }
+        if (value.endsWith("d")){
+            return Duration.ofDays(Long.parseLong(value.substring(0, value.length() - 1).trim()));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    /**
+     * Reads an enum constant, ignoring the case, e.g. "eager" -> PageLoadStrategy.EAGER
+     */
+    public static <E extends Enum<E>> E getEnum(String keyword, Class<E> type){
+        String value = getProperty(keyword);
+        for (E each : type.getEnumConstants()) {
+            if (each.name().equalsIgnoreCase(value)){
+                return each;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value for '" + keyword + "': " + value);
+    }
+
+    /**
+     * Overrides a value only for the current thread, e.g. to run firefox on one thread and chrome on another.
+     */
+    public static void overrideForCurrentThread(String keyword, String value){
+        threadOverrides.get().put(checkKnown(keyword), value);
+    }
+
+    /**
+     * Removes all the overrides of the current thread.
+     */
+    public static void clearThreadOverrides(){
+        threadOverrides.remove();
+    }
+
+    /**
+     * Returns the base URL of the Web Table app.
+     * If "webTable.env" is "local", the embedded stand-in (WebTableServer) is started (only once) and its URL is returned,
+     * otherwise the remote URL from "webTable.url" is used.
+     * @return base URL without the trailing "/"
+     */
+    public static String getWebTableUrl(){
+        if ("local".equalsIgnoreCase(getProperty("webTable.env"))){
+            return WebTableServer.start();
+        }
+        return getProperty("webTable.url");
     }
 
 }
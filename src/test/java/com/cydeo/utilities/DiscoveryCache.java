@@ -0,0 +1,194 @@
+package com.cydeo.utilities;
+
+import io.cucumber.tagexpressions.Expression;
+import io.cucumber.tagexpressions.TagExpressionParser;
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.DiscoverySelector;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.discovery.ClassSelector;
+import org.junit.platform.launcher.EngineDiscoveryResult;
+import org.junit.platform.launcher.LauncherDiscoveryListener;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+Parses only the feature files a run needs, e.g. mvn test -Dcucumber.filter.tags=@wip parses 1 file instead of all of them.
+
+The tags of every scenario are kept in "discovery.cache.file" (written by DiscoveryCachePlugin), together with the
+SHA-256 of the feature file they were read from. When a run is discovered, every feature file is hashed, and the run
+is pointed (with "cucumber.features") at the files that are new, changed, or have a scenario matching "cucumber.filter.tags".
+The other files are not parsed at all. The tags are still applied by Cucumber, so the same scenarios run as without the cache.
+Cucumber then warns that the other discovery selectors are ignored, that is expected.
+
+It is registered in META-INF/services, and only takes part when the whole runner class is discovered (e.g. CukesRunner).
+Running one feature file from the IDE, or the Surefire retries of single scenarios, discover as usual.
+"discovery.cache.enabled=false" turns it off.
+ */
+public class DiscoveryCache implements LauncherDiscoveryListener {
+
+    private static final String FEATURES_PROPERTY = "cucumber.features";
+    private static final String FEATURES_DIR = "features";
+
+    private static final String SUITE_ENGINE = "junit-platform-suite";
+
+    //feature files selected for the current discovery, null if it discovers as usual
+    private static String selected;
+    //true while the Suite engine discovers with the selected features
+    private static boolean selecting;
+
+    @Override
+    public synchronized void launcherDiscoveryStarted(LauncherDiscoveryRequest request) {
+        ConfigurationParameters parameters = request.getConfigurationParameters();
+        if (!ConfigurationReader.getBoolean("discovery.cache.enabled")
+                || parameters.get(FEATURES_PROPERTY).isPresent()
+                || parameters.get("cucumber.filter.name").isPresent()
+                || !request.getSelectorsByType(DiscoverySelector.class).stream().allMatch(ClassSelector.class::isInstance)) {
+            return;
+        }
+
+        Map<String, String> hashes = featureHashes();
+        List<String> features = select(hashes, parameters.get("cucumber.filter.tags").orElse(""));
+        if (features.isEmpty() || features.size() == hashes.size()) {
+            return;
+        }
+
+        selected = String.join(",", features);
+        System.out.println("Discovery cache: parsing " + features.size() + " of " + hashes.size() + " feature files");
+    }
+
+    /*
+    Only while the Suite engine discovers the runner class. The Cucumber engine would use the property on its own too,
+    and run the same scenarios a second time outside of the runner.
+    The engine reads it from the system properties, the runner's selectors can not be changed from here.
+     */
+    @Override
+    public synchronized void engineDiscoveryStarted(UniqueId engineId) {
+        if (selected != null && engineId.getEngineId().filter(SUITE_ENGINE::equals).isPresent()) {
+            System.setProperty(FEATURES_PROPERTY, selected);
+            selecting = true;
+        }
+    }
+
+    @Override
+    public synchronized void engineDiscoveryFinished(UniqueId engineId, EngineDiscoveryResult result) {
+        if (selecting && engineId.getEngineId().filter(SUITE_ENGINE::equals).isPresent()) {
+            System.clearProperty(FEATURES_PROPERTY);
+            selecting = false;
+        }
+    }
+
+    @Override
+    public synchronized void launcherDiscoveryFinished(LauncherDiscoveryRequest request) {
+        selected = null;
+    }
+
+    private static List<String> select(Map<String, String> hashes, String tags) {
+        Expression expression = tags.isBlank() ? scenarioTags -> true : TagExpressionParser.parse(tags);
+        Map<String, Object> cache = read();
+        List<String> selected = new ArrayList<>();
+        hashes.forEach((uri, hash) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> cached = (Map<String, Object>) cache.get(uri);
+            if (cached == null || !hash.equals(cached.get("sha256")) || matches(cached, expression)) {
+                selected.add(uri);
+            }
+        });
+        return selected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Map<String, Object> cached, Expression expression) {
+        for (Object each : (List<Object>) cached.get("scenarios")) {
+            if (expression.evaluate((List<String>) ((Map<String, Object>) each).get("tags"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //"classpath:features/WikiSearch.feature" -> SHA-256 of the file, only for feature files in directories (not in jars)
+    private static Map<String, String> featureHashes() {
+        Map<String, String> hashes = new TreeMap<>();
+        try {
+            for (URL root : Collections.list(DiscoveryCache.class.getClassLoader().getResources(FEATURES_DIR))) {
+                if (!root.getProtocol().equals("file")) {
+                    continue;
+                }
+                Path dir = Paths.get(root.toURI());
+                try (Stream<Path> files = Files.walk(dir)) {
+                    for (Path file : files.filter(each -> each.toString().endsWith(".feature")).collect(Collectors.toList())) {
+                        String name = dir.relativize(file).toString().replace('\\', '/');
+                        hashes.put("classpath:" + FEATURES_DIR + "/" + name, hash(Files.readString(file, StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            System.out.println("Discovery cache: could not read the feature files, all of them are parsed: " + e.getMessage());
+            return new TreeMap<>();
+        }
+        return hashes;
+    }
+
+    /**
+     * @return SHA-256 of the content of a feature file, hex encoded
+     */
+    public static String hash(String content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Updates the cache with the feature files parsed in this run, the entries of the other files are kept.
+     *
+     * @param hashes    uri of the feature file -> hash(content)
+     * @param scenarios uri of the feature file -> [{"name": .., "tags": ["@ui", ..]}], one per scenario (outline row)
+     */
+    public static synchronized void update(Map<String, String> hashes, Map<String, List<Map<String, Object>>> scenarios) {
+        Map<String, Object> cache = new TreeMap<>(read());
+        hashes.forEach((uri, hash) -> cache.put(uri, Map.of(
+                "sha256", hash,
+                "scenarios", scenarios.getOrDefault(uri, List.of()))));
+        Path file = Paths.get(ConfigurationReader.getProperty("discovery.cache.file"));
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, new Json().toJson(cache), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Could not write the discovery cache: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> read() {
+        Path file = Paths.get(ConfigurationReader.getProperty("discovery.cache.file"));
+        if (!Files.isRegularFile(file)) {
+            return Map.of();
+        }
+        try {
+            return new Json().toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+        } catch (IOException | RuntimeException e) {
+            //a broken cache is written again at the end of the run
+            return Map.of();
+        }
+    }
+
+}
@@ -1,11 +1,19 @@
 package com.cydeo.utilities;
 
+import org.openqa.selenium.PageLoadStrategy;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
 import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.support.events.EventFiringDecorator;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class Driver {
 
@@ -18,64 +26,214 @@ public class Driver {
      */
     //private static WebDriver driver; // default value = null
 
-    private static InheritableThreadLocal<WebDriver> driverPool = new InheritableThreadLocal<>();
+    /*
+    Every thread running a scenario owns its own driver.
+    It is a plain ThreadLocal (not Inheritable) so a thread started from a scenario does not share the parent's browser.
+     */
+    private static ThreadLocal<DriverPool.Session> driverPool = new ThreadLocal<>();
+
+    /*
+    Launching a browser is the slowest part of a scenario, so the sessions are kept warm in a pool.
+    Size of the pool and how many scenarios can re-use the same browser are read from configuration.properties
+    By default there is one browser for each thread that runs scenarios in parallel.
+     */
+    private static final DriverPool sessionPool = new DriverPool(
+            ScenarioScheduler.maxBrowsers(),
+            ConfigurationReader.getInt("driver.pool.maxUses"),
+            Driver::createDriver);
 
     /*
     Create a re-usable utility method which will return the same driver instance once we call it.
-    - If an instance doesn't exist, it will create first, and then it will always return same instance.
+    - If an instance doesn't exist, it will take one from the pool (or launch it first), and then it will always return same instance.
      */
     public static WebDriver getDriver(){
 
         if(driverPool.get() == null){
+            boolean fresh = freshDriver.get();
+            freshDriver.remove();
+            driverPool.set(sessionPool.acquire(ConfigurationReader.getProperty("browser"), fresh));
+            NetworkControl.use(driverPool.get().getDriver());
+        }
 
-            /*
-            We will read our browserType from configuration.properties file.
-            This way, we can control which browser is opened from outside our code.
-             */
-            String browserType = ConfigurationReader.getProperty("browser");
+        return driverPool.get().getDriver();
 
-            /*
-            Depending on the browserType returned from the configuration.properties
-            switch statement will determine the "case", and open the matching browser.
-             */
-            switch (browserType){
-                case "chrome":
-                    //WebDriverManager.chromedriver().setup();
-
-                    ChromeOptions options = new ChromeOptions();
-                    options.addArguments("--remote-allow-origins=*");
-                    driverPool.set(new ChromeDriver(options));
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-                case "firefox":
-                    //WebDriverManager.firefoxdriver().setup();
-                    driverPool.set(new FirefoxDriver());
-                    driverPool.get().manage().window().maximize();
-                    driverPool.get().manage().timeouts().implicitlyWait(Duration.ofSeconds(10));
-                    break;
-            }
+    }
+
+    //set when the next browser of the thread must be a newly launched one, not a warm one from the pool
+    private static final ThreadLocal<Boolean> freshDriver = ThreadLocal.withInitial(() -> false);
+
+    /*
+    The next getDriver() call on this thread launches a new browser instead of re-using one from the pool.
+    Used when a failed scenario is retried, so the retry does not inherit anything from a previous browser.
+     */
+    public static void useFreshDriver(){
+        quitDriver();
+        freshDriver.set(true);
+    }
+
+    /**
+     * @return true if the current thread is already holding a browser, without launching one
+     */
+    public static boolean hasDriver(){
+        return driverPool.get() != null;
+    }
+
+    private static final CommandTimingListener commandTimingListener = new CommandTimingListener();
+
+    //browser types that are not built in, e.g. a stub driver for the benchmarks: browserType -> launcher
+    private static final Map<String, Supplier<WebDriver>> customBrowsers = new ConcurrentHashMap<>();
+
+    /*
+    Adds a browser type that can be used as "browser" in configuration.properties (or -Dbrowser=..).
+    The launcher is responsible for the whole setup of its driver, only the command timing is added here.
+     */
+    public static void registerBrowser(String browserType, Supplier<WebDriver> launcher){
+        customBrowsers.put(browserType, launcher);
+    }
 
+    /*
+    We read our browserType from configuration.properties file (or -Dbrowser, or a per-thread override).
+    This way, we can control which browser is opened from outside our code.
+    "-headless" profiles are lean: fixed window size, no GPU, no extensions, no background networking.
+    "recording" launches "recording.browser" and records its commands, "replay" answers them without a browser (see CommandTape).
+     */
+    private static WebDriver createDriver(String browserType){
+
+        Supplier<WebDriver> customBrowser = customBrowsers.get(browserType);
+        if (customBrowser != null){
+            return new EventFiringDecorator<>(commandTimingListener).decorate(customBrowser.get());
+        }
+
+        //both behave like the recorded browser (e.g. headless or not), so the replay sends the same commands as the recording
+        boolean recording = browserType.equals("recording");
+        boolean replay = browserType.equals("replay");
+        if (recording || replay){
+            browserType = ConfigurationReader.getProperty("recording.browser");
+        }
+
+        WebDriver driver;
+
+        PageLoadStrategy pageLoadStrategy = ConfigurationReader.getEnum("browser.pageLoadStrategy", PageLoadStrategy.class);
+        boolean disableImages = ConfigurationReader.getBoolean("browser.disableImages");
+        String[] windowSize = ConfigurationReader.getProperty("browser.windowSize").split(",");
+
+        long start = System.currentTimeMillis();
+
+        /*
+        Depending on the browserType returned from the configuration.properties
+        switch statement will determine the "case", and open the matching browser.
+         */
+        switch (replay ? "replay" : browserType){
+            case "chrome":
+            case "chrome-headless":
+                //WebDriverManager.chromedriver().setup();
+
+                ChromeOptions options = new ChromeOptions();
+                options.addArguments("--remote-allow-origins=*");
+                options.setPageLoadStrategy(pageLoadStrategy);
+                if (browserType.endsWith("-headless")){
+                    options.addArguments("--headless=new",
+                            "--window-size=" + windowSize[0].trim() + "," + windowSize[1].trim(),
+                            "--disable-gpu",
+                            "--disable-extensions",
+                            "--disable-background-networking",
+                            "--disable-dev-shm-usage",
+                            "--no-first-run");
+                }
+                if (disableImages){
+                    options.setExperimentalOption("prefs", Map.of("profile.managed_default_content_settings.images", 2));
+                }
+                driver = recording
+                        ? CommandTape.recordingDriver(ChromeDriverService.createDefaultService(), options)
+                        : new ChromeDriver(options);
+                break;
+            case "firefox":
+            case "firefox-headless":
+                //WebDriverManager.firefoxdriver().setup();
+
+                FirefoxOptions firefoxOptions = new FirefoxOptions();
+                firefoxOptions.setPageLoadStrategy(pageLoadStrategy);
+                if (browserType.endsWith("-headless")){
+                    firefoxOptions.addArguments("-headless",
+                            "--width=" + windowSize[0].trim(),
+                            "--height=" + windowSize[1].trim());
+                    firefoxOptions.addPreference("layers.acceleration.disabled", true);
+                    firefoxOptions.addPreference("extensions.enabled", false);
+                    firefoxOptions.addPreference("app.update.enabled", false);
+                    firefoxOptions.addPreference("network.prefetch-next", false);
+                    firefoxOptions.addPreference("datareporting.policy.dataSubmissionEnabled", false);
+                }
+                if (disableImages){
+                    firefoxOptions.addPreference("permissions.default.image", 2);
+                }
+                driver = recording
+                        ? CommandTape.recordingDriver(GeckoDriverService.createDefaultService(), firefoxOptions)
+                        : new FirefoxDriver(firefoxOptions);
+                break;
+            case "replay":
+                driver = CommandTape.replayDriver();
+                break;
+            default:
+                throw new RuntimeException("Unsupported browser type: " + browserType);
+        }
+
+        //headless browsers already have their fixed window size
+        if (!browserType.endsWith("-headless")){
+            driver.manage().window().maximize();
         }
+        //no implicit wait: all the waits are explicit and go through WaitEngine, so they do not add up
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
 
-        return driverPool.get();
+        //so we can compare the cost of the browser profiles
+        System.out.println("Started " + (replay ? "replay of " : "") + browserType + " (pageLoadStrategy=" + pageLoadStrategy + ") in "
+                + (System.currentTimeMillis() - start) + " ms, resident memory: "
+                + BrowserProcess.residentMemoryKb(driver) + " KB");
 
+        //every call on the driver is timed for the timing report
+        WebDriver decorated = new EventFiringDecorator<>(commandTimingListener).decorate(driver);
+
+        //ads and trackers are blocked in the browser itself, see NetworkControl
+        NetworkControl.attach(driver, decorated);
+        return decorated;
     }
 
     /*
-    Create a new Driver.closeDriver(); it will use .quit() method to quit browsers, and then set the driver value back to null.
+    Create a new Driver.closeDriver(); it will give the browser back to the pool, and then set the driver value back to null.
+    The pool cleans the browser (cookies, storage, extra windows) so the next scenario starts fresh.
      */
     public static void closeDriver(){
+        //a recorded scenario must not depend on the scenario before it, so its browser is never re-used
+        if (CommandTape.isActive()){
+            quitDriver();
+            return;
+        }
         if (driverPool.get()!=null){
+            sessionPool.release(driverPool.get());
             /*
-            This line will terminate the currently existing driver completely. It will not exist going forward.
-             */
-            driverPool.get().quit();
-            /*
-            We assign the value back to "null" so that my "singleton" can create a newer one if needed.
+            We assign the value back to "null" so that my "singleton" can take a session from the pool again if needed.
              */
             driverPool.remove();
         }
     }
 
+    /*
+    Same as closeDriver(), but the browser is terminated completely instead of going back to the pool.
+    Use it when the browser state can not be trusted anymore (e.g. after a failed scenario).
+     */
+    public static void quitDriver(){
+        if (driverPool.get()!=null){
+            sessionPool.discard(driverPool.get());
+            driverPool.remove();
+        }
+    }
+
+    /*
+    Quits all the pooled browsers and prints the pool metrics. Call it once, after all the scenarios are done.
+     */
+    public static void shutdown(){
+        closeDriver();
+        sessionPool.shutdown();
+        System.out.println(sessionPool.metrics());
+    }
+
 }
@@ -0,0 +1,282 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+A bounded pool of warm browser sessions.
+Instead of launching a new browser for every scenario, we hand out an idle session,
+clean it up when the scenario is done, and only quit it after it was used "maxUses" times
+or when it does not respond anymore.
+ */
+public class DriverPool {
+
+    private final int maxSize;
+    private final int maxUses;
+    private final Function<String, WebDriver> launcher;
+
+    //limits how many sessions can be checked out at the same time
+    private final Semaphore permits;
+    private final BlockingDeque<Session> idleSessions = new LinkedBlockingDeque<>();
+    private final Set<Session> allSessions = ConcurrentHashMap.newKeySet();
+    //sessions that are alive or being launched, guarded by idleSessions so two threads can not both take the last free slot
+    private int sessionCount;
+
+    //metrics
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong acquireWaitNanos = new AtomicLong();
+    private final AtomicLong maxAcquireWaitNanos = new AtomicLong();
+    private final AtomicLong launchCount = new AtomicLong();
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong recycleCount = new AtomicLong();
+
+    /**
+     * @param launcher launches a new browser of the given browser type
+     */
+    public DriverPool(int maxSize, int maxUses, Function<String, WebDriver> launcher) {
+        this.maxSize = maxSize;
+        this.maxUses = maxUses;
+        this.launcher = launcher;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Holds a pooled WebDriver together with how many scenarios already used it
+     */
+    public static class Session {
+
+        private final WebDriver driver;
+        private final String browserType;
+        private int uses;
+
+        private Session(WebDriver driver, String browserType) {
+            this.driver = driver;
+            this.browserType = browserType;
+        }
+
+        public WebDriver getDriver() {
+            return driver;
+        }
+
+        public int getUses() {
+            return uses;
+        }
+    }
+
+    /**
+     * Returns a warm session of the given browser type from the pool, or launches a new one if there is no such idle session.
+     * Blocks while "maxSize" sessions are already checked out.
+     *
+     * @param browserType e.g. chrome, firefox-headless
+     * @return session that is owned by the caller until it is released
+     */
+    public Session acquire(String browserType) {
+        return acquire(browserType, false);
+    }
+
+    /**
+     * Same as acquire(browserType), but with fresh=true a new browser is always launched, e.g. to retry a failed scenario.
+     */
+    public Session acquire(String browserType, boolean fresh) {
+        long start = System.nanoTime();
+        //the scenarios without a browser keep running on a spare worker while this one waits
+        ScenarioScheduler.acquire(permits);
+        long waited = System.nanoTime() - start;
+        acquireCount.incrementAndGet();
+        acquireWaitNanos.addAndGet(waited);
+        maxAcquireWaitNanos.accumulateAndGet(waited, Math::max);
+
+        Session session = fresh ? null : takeIdle(browserType);
+        try {
+            if (session != null) {
+                reuseCount.incrementAndGet();
+            } else {
+                reserveSlot();
+                try {
+                    session = new Session(launcher.apply(browserType), browserType);
+                } catch (RuntimeException e) {
+                    synchronized (idleSessions) {
+                        sessionCount--;
+                    }
+                    throw e;
+                }
+                allSessions.add(session);
+                launchCount.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            //launching failed, give the slot back so other threads are not blocked forever
+            permits.release();
+            throw e;
+        }
+        session.uses++;
+        return session;
+    }
+
+    /*
+    Counts the session about to be launched. Idle browsers of other types do not count against the limit forever,
+    when the pool is full the oldest one gives its slot to the new session.
+    A checked out session is counted until it is quit, so while the caller holds a permit a full pool always has an idle one.
+     */
+    private void reserveSlot() {
+        Session oldest = null;
+        synchronized (idleSessions) {
+            if (sessionCount >= maxSize) {
+                oldest = idleSessions.pollLast();
+                if (oldest != null && allSessions.remove(oldest)) {
+                    sessionCount--;
+                }
+            }
+            sessionCount++;
+        }
+        if (oldest != null) {
+            recycleCount.incrementAndGet();
+            close(oldest);
+        }
+    }
+
+    private Session takeIdle(String browserType) {
+        synchronized (idleSessions) {
+            Iterator<Session> iterator = idleSessions.iterator();
+            while (iterator.hasNext()) {
+                Session each = iterator.next();
+                if (each.browserType.equals(browserType)) {
+                    iterator.remove();
+                    return each;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives the session back to the pool.
+     * The session is cleaned up and kept warm, unless it reached "maxUses" or looks unhealthy.
+     *
+     * @param session session returned by acquire()
+     */
+    public void release(Session session) {
+        try {
+            if (session.uses >= maxUses || !reset(session.driver)) {
+                recycleCount.incrementAndGet();
+                quit(session);
+            } else {
+                idleSessions.offerFirst(session);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Quits the session without returning it to the pool, e.g. after a failed scenario.
+     *
+     * @param session session returned by acquire()
+     */
+    public void discard(Session session) {
+        try {
+            recycleCount.incrementAndGet();
+            quit(session);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Quits every session the pool ever created and is still alive.
+     */
+    public void shutdown() {
+        idleSessions.clear();
+        for (Session each : allSessions) {
+            quit(each);
+        }
+    }
+
+    /**
+     * Cleans the browser so the next scenario starts from a blank state:
+     * extra windows, cookies, local/session storage, and the current page.
+     *
+     * @return false if the browser did not respond, so it should be recycled
+     */
+    private boolean reset(WebDriver driver) {
+        try {
+            List<String> handles = List.copyOf(driver.getWindowHandles());
+            if (handles.isEmpty()) {
+                return false;
+            }
+
+            //close all the windows except the first one, clearing storage of each origin on the way
+            for (int i = handles.size() - 1; i >= 0; i--) {
+                driver.switchTo().window(handles.get(i));
+                clearStorage(driver);
+                if (i > 0) {
+                    driver.close();
+                }
+            }
+
+            //Chromium browsers can clear the cookies of all domains at once, others only for the current domain
+            if (driver instanceof HasCdp) {
+                ((HasCdp) driver).executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            } else {
+                driver.manage().deleteAllCookies();
+            }
+
+            driver.get("about:blank");
+            return true;
+        } catch (RuntimeException e) {
+            System.out.println("Browser session is unhealthy, it will be recycled: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void clearStorage(WebDriver driver) {
+        ((JavascriptExecutor) driver).executeScript(
+                "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+    }
+
+    private void quit(Session session) {
+        synchronized (idleSessions) {
+            if (allSessions.remove(session)) {
+                sessionCount--;
+            }
+        }
+        close(session);
+    }
+
+    private void close(Session session) {
+        NetworkControl.detach(session.driver);
+        try {
+            session.driver.quit();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to quit browser session: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return one line summary of acquire wait time, launches and reuses
+     */
+    public String metrics() {
+        long acquires = acquireCount.get();
+        long avgWaitMillis = acquires == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(acquireWaitNanos.get() / acquires);
+        return "DriverPool[maxSize=" + maxSize + ", maxUses=" + maxUses + "]"
+                + " acquires=" + acquires
+                + ", launches=" + launchCount.get()
+                + ", reuses=" + reuseCount.get()
+                + ", recycles=" + recycleCount.get()
+                + ", avgAcquireWaitMs=" + avgWaitMillis
+                + ", maxAcquireWaitMs=" + TimeUnit.NANOSECONDS.toMillis(maxAcquireWaitNanos.get());
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/*
+The only place where a failed element interaction is tried again.
+
+Recoverable errors:
+- StaleElementReferenceException: the page re-rendered the element, it is located again from its By.
+- ElementClickInterceptedException, ElementNotInteractableException: something is still in the way
+  (an overlay, an animation, a disabled field), the same element is tried again a bit later.
+Every other error fails right away.
+
+- Hard deadline: "element.retry.timeout". The last attempt is made at the deadline at the latest, then its error is thrown.
+  Retries do not nest: inside a retry (e.g. BrowserUtils.clickWithTimeOut on a page object element) the element proxies
+  make a single attempt, so the outer deadline is the only one and every retry is counted once.
+  Waits inside a retry should use remaining() as their timeout.
+- Exponential backoff with jitter: the pause starts at "element.retry.backoff" and doubles after every attempt (up to 1 s).
+  A random half of it is skipped, so the parallel scenarios do not all hit their browsers at the same moment.
+- Metrics: retries per locator, printed by report() and written to timing.json by the TimingReportPlugin.
+
+The page objects get this through their element proxies (see PageElementDecorator), and element(By) gives the same proxy
+for a locator that is not a @FindBy field.
+ */
+public class ElementRecovery {
+
+    private ElementRecovery() {}
+
+    private static final long MAX_BACKOFF_NANOS = Duration.ofSeconds(1).toNanos();
+
+    private static final int RETRIES = 0;
+    private static final int RELOCATED = 1;
+    private static final int RECOVERED = 2;
+    private static final int FAILED = 3;
+
+    //locator -> {retries, relocated, recovered, failed}, only the locators that needed a retry are in it
+    private static final Map<String, LongAdder[]> retriesByLocator = new ConcurrentHashMap<>();
+
+    //deadline of the retry running on the thread, null outside of a retry
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    //the timeout is only read when it is needed, so a call that succeeds at the first attempt costs nothing extra
+    private static class Deadline {
+        final long start = System.nanoTime();
+        final Supplier<Duration> timeout;
+        long nanos;
+        boolean known;
+
+        Deadline(Supplier<Duration> timeout) {
+            this.timeout = timeout;
+        }
+
+        long nanos() {
+            if (!known) {
+                nanos = start + timeout.get().toNanos();
+                known = true;
+            }
+            return nanos;
+        }
+    }
+
+    /**
+     * @return how long an interaction is tried again at most, "element.retry.timeout" in configuration.properties
+     */
+    public static Duration defaultTimeout() {
+        return ConfigurationReader.getDuration("element.retry.timeout");
+    }
+
+    /**
+     * @return true for the errors that may go away by trying again (ElementClickInterceptedException is an ElementNotInteractableException)
+     */
+    public static boolean isRecoverable(Throwable error) {
+        return error instanceof StaleElementReferenceException || error instanceof ElementNotInteractableException;
+    }
+
+    /**
+     * Runs the action until it does not fail with a recoverable error, or the timeout is over.
+     *
+     * @param locator name of the element in the metrics, e.g. By.id: submit
+     * @param timeout hard deadline, counted from now
+     * @param action  interaction with the element, it must locate the element again itself if it goes stale
+     * @return the value returned by the action
+     * @throws WebDriverException the last error, if the action did not succeed before the deadline
+     */
+    public static <T> T retry(String locator, Duration timeout, Supplier<T> action) {
+        return retry(locator, () -> timeout, action, () -> {});
+    }
+
+    /**
+     * Same as retry(String, Duration, Supplier), for an action without a result, e.g. a click.
+     */
+    public static void run(String locator, Duration timeout, Runnable action) {
+        retry(locator, () -> timeout, () -> {
+            action.run();
+            return null;
+        }, () -> {});
+    }
+
+    /**
+     * Proxy element for the locator, in the browser of the current thread.
+     * The element is located when it is first used (without waiting, see PageElementLocatorFactory) and every call on it
+     * recovers from the errors above, locating it again from the locator when it went stale.
+     */
+    public static WebElement element(By by) {
+        return proxy(ElementRecovery.class.getClassLoader(), new PageElementLocatorFactory.CachingElementLocator(Driver::getDriver, by));
+    }
+
+    /**
+     * @return time left until the deadline of the retry running on the thread (zero if it is over),
+     * or the default timeout outside of a retry
+     */
+    public static Duration remaining() {
+        Deadline deadline = current.get();
+        if (deadline == null) {
+            return defaultTimeout();
+        }
+        return Duration.ofNanos(Math.max(0, deadline.nanos() - System.nanoTime()));
+    }
+
+    /*
+    onStale runs before the next attempt when the element went stale, e.g. to forget a cached element.
+    Inside another retry the action is only tried once, the outer retry tries it again until its own deadline.
+     */
+    private static <T> T retry(String locator, Supplier<Duration> timeout, Supplier<T> action, Runnable onStale) {
+        if (current.get() != null) {
+            try {
+                return action.get();
+            } catch (StaleElementReferenceException e) {
+                onStale.run();
+                throw e;
+            }
+        }
+        Deadline deadline = new Deadline(timeout);
+        current.set(deadline);
+        try {
+            return retry(locator, deadline, action, onStale);
+        } finally {
+            current.remove();
+        }
+    }
+
+    private static <T> T retry(String locator, Deadline deadline, Supplier<T> action, Runnable onStale) {
+        long backoff = 0;
+        int attempts = 0;
+        while (true) {
+            try {
+                T result = action.get();
+                if (attempts > 0) {
+                    stats(locator)[RECOVERED].increment();
+                }
+                return result;
+            } catch (WebDriverException e) {
+                if (!isRecoverable(e)) {
+                    throw e;
+                }
+                if (attempts == 0) {
+                    backoff = ConfigurationReader.getDuration("element.retry.backoff").toNanos();
+                }
+                long remaining = deadline.nanos() - System.nanoTime();
+                if (remaining <= 0) {
+                    stats(locator)[FAILED].increment();
+                    throw e;
+                }
+                LongAdder[] stats = stats(locator);
+                stats[RETRIES].increment();
+                if (e instanceof StaleElementReferenceException) {
+                    stats[RELOCATED].increment();
+                    onStale.run();
+                }
+
+                long pause = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                sleep(Math.min(pause, remaining), e);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+                attempts++;
+            }
+        }
+    }
+
+    private static void sleep(long nanos, WebDriverException error) {
+        long start = System.nanoTime();
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error;
+        } finally {
+            TimingRecorder.recordSleep(System.nanoTime() - start);
+        }
+    }
+
+    private static LongAdder[] stats(String locator) {
+        return retriesByLocator.computeIfAbsent(locator, key -> new LongAdder[]{new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()});
+    }
+
+    /*
+    Every call on the proxy goes to the located element, through retry(..).
+    A CachingElementLocator forgets its element when it went stale, so the next attempt locates it again from its By.
+     */
+    static WebElement proxy(ClassLoader loader, ElementLocator locator) {
+        PageElementLocatorFactory.CachingElementLocator caching = locator instanceof PageElementLocatorFactory.CachingElementLocator
+                ? (PageElementLocatorFactory.CachingElementLocator) locator
+                : null;
+        String name = caching != null ? caching.getBy().toString() : locator.toString();
+        Runnable onStale = caching != null ? caching::invalidate : () -> {};
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            if ("getWrappedElement".equals(method.getName())) {
+                return locator.findElement();
+            }
+            if ("toString".equals(method.getName())) {
+                return "Proxy element for: " + name;
+            }
+            return retry(name, ElementRecovery::defaultTimeout, () -> invoke(method, locator.findElement(), args), onStale);
+        };
+        return (WebElement) Proxy.newProxyInstance(loader,
+                new Class<?>[]{WebElement.class, WrapsElement.class, Locatable.class}, handler);
+    }
+
+    private static Object invoke(Method method, WebElement element, Object[] args) {
+        try {
+            return method.invoke(element, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new WebDriverException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new WebDriverException(e);
+        }
+    }
+
+    /**
+     * @return the locator of an element for the metrics, e.g. "css selector: #submit" for a located element
+     */
+    static String locatorOf(WebElement element) {
+        //[[ChromeDriver: chrome on linux (4f3c..)] -> css selector: #submit] or Proxy element for: By.id: submit
+        String text = String.valueOf(element);
+        int arrow = text.lastIndexOf(" -> ");
+        if (arrow >= 0) {
+            return text.substring(arrow + 4, text.endsWith("]") ? text.length() - 1 : text.length());
+        }
+        return text.startsWith("Proxy element for: ") ? text.substring("Proxy element for: ".length()) : text;
+    }
+
+    /**
+     * @return locator -> {retries, relocated, recovered, failed}, the locators with the most retries first
+     */
+    public static Map<String, Map<String, Long>> metrics() {
+        return retriesByLocator.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder[]> e) -> e.getValue()[RETRIES].sum()).reversed())
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> {
+                    Map<String, Long> each = new LinkedHashMap<>();
+                    each.put("retries", e.getValue()[RETRIES].sum());
+                    each.put("relocated", e.getValue()[RELOCATED].sum());
+                    each.put("recovered", e.getValue()[RECOVERED].sum());
+                    each.put("failed", e.getValue()[FAILED].sum());
+                    return each;
+                }, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * @return one line summary of the retries, with the locators that needed the most of them
+     */
+    public static String report() {
+        Map<String, Map<String, Long>> metrics = metrics();
+        long retries = metrics.values().stream().mapToLong(each -> each.get("retries")).sum();
+        long recovered = metrics.values().stream().mapToLong(each -> each.get("recovered")).sum();
+        long failed = metrics.values().stream().mapToLong(each -> each.get("failed")).sum();
+        return "ElementRecovery retries=" + retries + ", recovered=" + recovered + ", failed=" + failed
+                + ", top=" + metrics.entrySet().stream().limit(5)
+                .map(e -> e.getKey() + "=" + e.getValue().get("retries"))
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.cydeo.utilities;
+
+import io.cucumber.java.Scenario;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Saves what the browser looked like when a scenario failed, without slowing down the teardown.
+
+On the scenario's thread we only take what needs the browser: the PNG bytes, and optionally the DOM and the console logs.
+Compressing the PNG to a JPEG and writing the files is done by a background thread,
+and the scenario only gets a link to the file instead of the whole image inlined into the html report.
+
+Files are named by the hash of what was captured (target/screenshots/<sha-256>.jpg), so the same page is stored only once.
+"screenshot.quality" (0.1 - 1.0) is the JPEG quality, "screenshot.dom" and "screenshot.consoleLogs" turn the extras on.
+ */
+public class FailureEvidence {
+
+    private FailureEvidence() {}
+
+    private static final Path DIRECTORY = Paths.get("target", "screenshots");
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "failure-evidence");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final List<Future<?>> pending = new ArrayList<>();
+
+    private static final AtomicLong screenshots = new AtomicLong();
+    private static final AtomicLong pngBytes = new AtomicLong();
+    private static final AtomicLong writtenBytes = new AtomicLong();
+    private static final AtomicLong captureNanos = new AtomicLong();
+
+    /**
+     * Captures the screenshot (and the extras, if turned on) of the current browser and attaches links to the scenario.
+     * Returns as soon as the bytes are taken from the browser, the files are written in the background.
+     */
+    public static void capture(Scenario scenario) {
+        long start = System.nanoTime();
+        WebDriver driver = Driver.getDriver();
+
+        byte[] png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+        String name = hash(png);
+        //only the screenshots that are written count in the sizes, not the ones already stored under the same hash
+        submit(DIRECTORY.resolve(name + ".jpg"), () -> {
+            pngBytes.addAndGet(png.length);
+            return compress(png);
+        });
+        scenario.attach(link(name + ".jpg"), "text/uri-list", scenario.getName() + " - screenshot");
+        screenshots.incrementAndGet();
+
+        if (ConfigurationReader.getBoolean("screenshot.dom")) {
+            byte[] dom = driver.getPageSource().getBytes(StandardCharsets.UTF_8);
+            String domName = hash(dom) + ".html";
+            submit(DIRECTORY.resolve(domName), () -> dom);
+            scenario.attach(link(domName), "text/uri-list", scenario.getName() + " - DOM");
+        }
+
+        if (ConfigurationReader.getBoolean("screenshot.consoleLogs")) {
+            byte[] logs = consoleLogs(driver).getBytes(StandardCharsets.UTF_8);
+            String logsName = hash(logs) + ".log";
+            submit(DIRECTORY.resolve(logsName), () -> logs);
+            scenario.attach(link(logsName), "text/uri-list", scenario.getName() + " - console");
+        }
+
+        captureNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    //absolute file: link, so it opens from target/cucumber-reports.html and from the PrettyReports pages in target/cucumber
+    private static String link(String fileName) {
+        return DIRECTORY.resolve(fileName).toAbsolutePath().toUri().toString();
+    }
+
+    private interface Content {
+        byte[] get() throws IOException;
+    }
+
+    private static void submit(Path file, Content content) {
+        Future<?> future = writer.submit(() -> {
+            try {
+                if (!Files.exists(file)) {
+                    Files.createDirectories(DIRECTORY);
+                    Files.write(file, content.get());
+                }
+            } catch (IOException e) {
+                System.out.println("Could not save the failure evidence: " + e.getMessage());
+            }
+        });
+        synchronized (pending) {
+            pending.add(future);
+        }
+    }
+
+    /**
+     * Waits until all the files are written. Call it once, after all the scenarios are done.
+     */
+    public static void awaitPending() {
+        List<Future<?>> futures;
+        synchronized (pending) {
+            futures = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Future<?> each : futures) {
+            try {
+                each.get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                System.out.println("Failure evidence was not written: " + e.getMessage());
+            }
+        }
+    }
+
+    private static byte[] compress(byte[] png) throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(png));
+        if (original == null) {
+            return png;
+        }
+
+        //JPEG has no transparency, so the image is drawn onto a plain RGB one first
+        BufferedImage rgb = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.createGraphics().drawImage(original, 0, 0, Color.WHITE, null);
+
+        ImageWriter jpegWriter = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = jpegWriter.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(Float.parseFloat(ConfigurationReader.getProperty("screenshot.quality")));
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(jpeg)) {
+            jpegWriter.setOutput(output);
+            jpegWriter.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            jpegWriter.dispose();
+        }
+        writtenBytes.addAndGet(jpeg.size());
+        return jpeg.toByteArray();
+    }
+
+    //only some browsers (e.g. Chrome) give access to the console
+    private static String consoleLogs(WebDriver driver) {
+        try {
+            StringBuilder logs = new StringBuilder();
+            for (LogEntry each : driver.manage().logs().get(LogType.BROWSER)) {
+                logs.append(each).append(System.lineSeparator());
+            }
+            return logs.toString();
+        } catch (RuntimeException e) {
+            return "Console logs are not available: " + e.getMessage();
+        }
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte each : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", each));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return one line summary of the screenshot sizes and the time the scenarios spent on them
+     */
+    public static String metrics() {
+        long count = screenshots.get();
+        return "FailureEvidence[" + DIRECTORY + "] screenshots=" + count
+                + ", pngKB=" + pngBytes.get() / 1024
+                + ", jpegKB=" + writtenBytes.get() / 1024
+                + ", avgCaptureMs=" + (count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(captureNanos.get() / count));
+    }
+
+}
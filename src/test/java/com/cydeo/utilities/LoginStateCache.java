@@ -0,0 +1,189 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Logs in through the UI only once per user and per thread, and re-uses the session in the next scenarios.
+
+After the first real login, the cookies, localStorage and sessionStorage of the app are captured.
+In the next scenario (the browser was cleaned by the DriverPool) they are put back, and the browser goes straight to
+the page the login landed on, e.g. the orders page.
+
+- Entries expire after "login.cache.ttl", or earlier if one of the captured cookies expires.
+- If the app sends the browser back to the login page (session ended on the server, user logged out),
+  the entry is dropped and the real login is done again.
+- "login.cache.enabled=false" turns it off, every scenario logs in through the UI.
+ */
+public class LoginStateCache {
+
+    private LoginStateCache() {}
+
+    private static class Entry {
+        Set<Cookie> cookies;
+        Map<String, String> localStorage;
+        Map<String, String> sessionStorage;
+        String landingUrl;
+        long expiresAtMillis;
+    }
+
+    //every thread has its own browser, so it also has its own sessions: loginUrl + username -> captured state
+    private static final ThreadLocal<Map<String, Entry>> entries = ThreadLocal.withInitial(HashMap::new);
+
+    //key of the entry the current scenario was logged in with, to check for a logout redirect at the end
+    private static final ThreadLocal<String> restoredKey = new ThreadLocal<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong invalidations = new AtomicLong();
+
+    private static final String READ_STORAGE_SCRIPT =
+            "var storage = window[arguments[0]], result = {};" +
+            "for (var i = 0; i < storage.length; i++) { result[storage.key(i)] = storage.getItem(storage.key(i)); }" +
+            "return result;";
+
+    private static final String WRITE_STORAGE_SCRIPT =
+            "var storage = window[arguments[0]], values = arguments[1];" +
+            "for (var key in values) { storage.setItem(key, values[key]); }";
+
+    /**
+     * Makes sure the user is logged in, with the real login only if there is no valid captured session.
+     *
+     * @param loginUrl login page of the app, e.g. ConfigurationReader.getWebTableUrl() + "/login"
+     * @param username only used to keep the sessions of different users apart
+     * @param uiLogin  logs in through the UI, the browser is already on the login page when it is called
+     */
+    public static void login(String loginUrl, String username, Runnable uiLogin) {
+        String key = loginUrl + "|" + username;
+        WebDriver driver = Driver.getDriver();
+
+        Entry entry = entries.get().get(key);
+        if (entry != null && entry.expiresAtMillis < System.currentTimeMillis()) {
+            invalidate(key);
+            entry = null;
+        }
+
+        if (entry != null && restore(driver, loginUrl, entry)) {
+            hits.incrementAndGet();
+            restoredKey.set(key);
+            return;
+        }
+        if (entry != null) {
+            //the app did not accept the captured session anymore
+            invalidate(key);
+        }
+
+        misses.incrementAndGet();
+        driver.get(loginUrl);
+        uiLogin.run();
+        WaitEngine.until(d -> !isOnLoginPage(d, loginUrl));
+
+        //a recorded scenario must log in the same way on its own, whatever ran before it
+        if (ConfigurationReader.getBoolean("login.cache.enabled") && !CommandTape.isActive()) {
+            entries.get().put(key, capture(driver));
+            restoredKey.set(key);
+        }
+    }
+
+    /**
+     * Call it at the end of every scenario.
+     * If a scenario that used a captured session ends on the login page, the session is not trusted anymore.
+     */
+    public static void afterScenario() {
+        String key = restoredKey.get();
+        restoredKey.remove();
+        if (key == null || !Driver.hasDriver()) {
+            return;
+        }
+        String loginUrl = key.substring(0, key.lastIndexOf('|'));
+        try {
+            if (isOnLoginPage(Driver.getDriver(), loginUrl)) {
+                invalidate(key);
+            }
+        } catch (RuntimeException e) {
+            //browser does not respond, nothing to check
+        }
+    }
+
+    private static void invalidate(String key) {
+        if (entries.get().remove(key) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private static boolean isOnLoginPage(WebDriver driver, String loginUrl) {
+        return driver.getCurrentUrl().startsWith(loginUrl);
+    }
+
+    private static Entry capture(WebDriver driver) {
+        Entry entry = new Entry();
+        entry.cookies = Set.copyOf(driver.manage().getCookies());
+        entry.localStorage = readStorage(driver, "localStorage");
+        entry.sessionStorage = readStorage(driver, "sessionStorage");
+        entry.landingUrl = driver.getCurrentUrl();
+
+        long expiresAt = System.currentTimeMillis() + ConfigurationReader.getDuration("login.cache.ttl").toMillis();
+        for (Cookie each : entry.cookies) {
+            if (each.getExpiry() != null) {
+                expiresAt = Math.min(expiresAt, each.getExpiry().getTime());
+            }
+        }
+        entry.expiresAtMillis = expiresAt;
+        return entry;
+    }
+
+    /**
+     * @return false if the app redirected to the login page, so the captured session is not valid anymore
+     */
+    private static boolean restore(WebDriver driver, String loginUrl, Entry entry) {
+        //cookies and storage can only be set for the origin of the current page
+        driver.get(loginUrl);
+        driver.manage().deleteAllCookies();
+        for (Cookie each : entry.cookies) {
+            //without the domain, the cookie belongs to the current host, same as when it was captured
+            driver.manage().addCookie(new Cookie.Builder(each.getName(), each.getValue())
+                    .path(each.getPath())
+                    .expiresOn(each.getExpiry() == null ? null : new Date(each.getExpiry().getTime()))
+                    .isSecure(each.isSecure())
+                    .isHttpOnly(each.isHttpOnly())
+                    .sameSite(each.getSameSite())
+                    .build());
+        }
+        writeStorage(driver, "localStorage", entry.localStorage);
+        writeStorage(driver, "sessionStorage", entry.sessionStorage);
+
+        driver.get(entry.landingUrl);
+        return !isOnLoginPage(driver, loginUrl);
+    }
+
+    //also used by ScenarioCheckpoints
+    @SuppressWarnings("unchecked")
+    static Map<String, String> readStorage(WebDriver driver, String storage) {
+        Object values = ((JavascriptExecutor) driver).executeScript(READ_STORAGE_SCRIPT, storage);
+        return values instanceof Map ? Map.copyOf((Map<String, String>) values) : Map.of();
+    }
+
+    static void writeStorage(WebDriver driver, String storage, Map<String, String> values) {
+        if (!values.isEmpty()) {
+            ((JavascriptExecutor) driver).executeScript(WRITE_STORAGE_SCRIPT, storage, values);
+        }
+    }
+
+    /**
+     * @return one line summary of how many logins were skipped
+     */
+    public static String metrics() {
+        return "LoginStateCache[ttl=" + ConfigurationReader.getDuration("login.cache.ttl") + "]"
+                + " restored=" + hits.get()
+                + ", uiLogins=" + misses.get()
+                + ", invalidated=" + invalidations.get();
+    }
+
+}
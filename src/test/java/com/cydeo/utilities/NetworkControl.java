@@ -0,0 +1,415 @@
+package com.cydeo.utilities;
+
+import io.cucumber.java.Scenario;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.ChromiumNetworkConditions;
+import org.openqa.selenium.chromium.HasNetworkConditions;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+Controls the network of the Chromium browsers through the Chrome DevTools Protocol (CDP).
+
+- Blocking: requests matching "network.block" (e.g. ads and trackers no step asserts on) never leave the browser.
+- Local cache: requests matching "network.cache.patterns" are answered from "network.cache.dir" if the file is there,
+  e.g. https://fonts.gstatic.com/s/roboto/v30/font.woff2 -> <network.cache.dir>/fonts.gstatic.com/s/roboto/v30/font.woff2
+- Throttling: "network.profile" simulates a slow network, and a scenario can have its own with a tag, e.g. @network:slow-3g
+- Response store: whole responses of the sites matching "network.store.patterns" (e.g. Wikipedia, Etsy) are kept on disk
+  and served from there in the next runs, or strictly offline on the build agents (see ResponseStore).
+
+Patterns are the CDP URL patterns: "*" is any text, "?" is one character, e.g. *doubleclick.net*
+Only the matching requests are paused and handled here (Fetch domain), all the others go to the network without any overhead.
+Only the first window of the browser is intercepted, windows opened by a scenario go to the network directly.
+
+The commands are sent by name, so they do not depend on the CDP version of the installed Chrome.
+Every scenario gets a line in the report with the requests and bytes it saved, and report() sums up the run.
+ */
+public class NetworkControl {
+
+    private NetworkControl() {}
+
+    private static final String NO_PROFILE = "none";
+    private static final String PROFILE_TAG = "@network:";
+
+    //name -> {latency ms, download bytes/s, upload bytes/s}, the same as the Chrome DevTools presets
+    private static final Map<String, int[]> PROFILES = Map.of(
+            "fast-3g", new int[]{563, 180_000, 84_375},
+            "slow-3g", new int[]{2000, 50_000, 50_000},
+            "slow-4g", new int[]{150, 200_000, 93_750});
+
+    private static final Event<Map<String, Object>> REQUEST_PAUSED = new Event<>("Fetch.requestPaused", input -> input.read(Json.MAP_TYPE));
+
+    //driver used by the scenarios -> its browser's network session
+    private static final Map<WebDriver, NetworkSession> sessions = new ConcurrentHashMap<>();
+
+    //network session of the scenario running on the thread
+    private static final ThreadLocal<NetworkSession> current = new ThreadLocal<>();
+
+    private static final AtomicLong scenarios = new AtomicLong();
+    private static final AtomicLong throttledScenarios = new AtomicLong();
+    private static final AtomicLong blockedRequests = new AtomicLong();
+    private static final AtomicLong cachedRequests = new AtomicLong();
+    private static final AtomicLong cachedBytes = new AtomicLong();
+    private static final AtomicLong storeHits = new AtomicLong();
+    private static final AtomicLong storeMisses = new AtomicLong();
+    private static final AtomicLong storedResponses = new AtomicLong();
+
+    private static class NetworkSession {
+        final WebDriver browser;
+        final List<Pattern> block;
+        final List<Pattern> cache;
+        final Path cacheDir;
+        final List<Pattern> store;
+        final ResponseStore responseStore;
+        String profile = NO_PROFILE;
+
+        //of the scenario that uses the browser now
+        final AtomicLong blocked = new AtomicLong();
+        final AtomicLong cached = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong stored = new AtomicLong();
+
+        NetworkSession(WebDriver browser, List<String> block, List<String> cache, List<String> store, ResponseStore responseStore) {
+            this.browser = browser;
+            this.block = block.stream().map(NetworkControl::toRegex).collect(Collectors.toList());
+            this.cache = cache.stream().map(NetworkControl::toRegex).collect(Collectors.toList());
+            this.cacheDir = Paths.get(ConfigurationReader.getProperty("network.cache.dir")).toAbsolutePath().normalize();
+            this.store = store.stream().map(NetworkControl::toRegex).collect(Collectors.toList());
+            this.responseStore = responseStore;
+        }
+    }
+
+    /**
+     * Starts blocking and caching in a newly launched browser. Does nothing for browsers other than Chromium.
+     *
+     * @param browser the browser itself
+     * @param driver  the driver the scenarios use for it (e.g. decorated), the session is looked up by it
+     */
+    static void attach(WebDriver browser, WebDriver driver) {
+        if (!(browser instanceof HasNetworkConditions) || !(browser instanceof HasDevTools)) {
+            return;
+        }
+        List<String> block = list("network.block");
+        List<String> cache = list("network.cache.patterns");
+        ResponseStore.Mode mode = ConfigurationReader.getEnum("network.store.mode", ResponseStore.Mode.class);
+        List<String> store = mode == ResponseStore.Mode.OFF ? List.of() : list("network.store.patterns");
+        NetworkSession session = new NetworkSession(browser, block, cache, store, new ResponseStore(mode));
+        sessions.put(driver, session);
+        if (block.isEmpty() && cache.isEmpty() && store.isEmpty()) {
+            return;
+        }
+
+        List<Map<String, Object>> patterns = new ArrayList<>();
+        for (String each : block) {
+            patterns.add(Map.of("urlPattern", each, "requestStage", "Request"));
+        }
+        for (String each : cache) {
+            patterns.add(Map.of("urlPattern", each, "requestStage", "Request"));
+        }
+        for (String each : store) {
+            patterns.add(Map.of("urlPattern", each, "requestStage", "Request"));
+            //the responses that were not in the store are paused again when they arrive, to store them
+            if (mode == ResponseStore.Mode.CACHE) {
+                patterns.add(Map.of("urlPattern", each, "requestStage", "Response"));
+            }
+        }
+        try {
+            DevTools devTools = ((HasDevTools) browser).getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+            devTools.addListener(REQUEST_PAUSED, paused -> handle(devTools, session, paused));
+            devTools.send(new Command<>("Fetch.enable", Map.of("patterns", patterns)));
+        } catch (RuntimeException e) {
+            //the scenarios still work, only without blocking and caching
+            System.out.println("Network interception is off for this browser: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets the browser, call it when it is quit.
+     */
+    static void detach(WebDriver driver) {
+        sessions.remove(driver);
+    }
+
+    /**
+     * Call it before every scenario. A tag like @network:slow-3g sets the network profile of the scenario.
+     */
+    public static void startScenario(Scenario scenario) {
+        for (String tag : scenario.getSourceTagNames()) {
+            if (tag.startsWith(PROFILE_TAG)) {
+                ConfigurationReader.overrideForCurrentThread("network.profile", tag.substring(PROFILE_TAG.length()));
+            }
+        }
+    }
+
+    /**
+     * The current thread started to use the driver for its scenario: the counters start from zero,
+     * and the network profile of the scenario is applied if the browser has another one.
+     */
+    static void use(WebDriver driver) {
+        NetworkSession session = sessions.get(driver);
+        current.set(session);
+        if (session == null) {
+            return;
+        }
+        session.blocked.set(0);
+        session.cached.set(0);
+        session.bytes.set(0);
+        session.hits.set(0);
+        session.misses.set(0);
+        session.stored.set(0);
+
+        String profile = ConfigurationReader.getProperty("network.profile");
+        if (!profile.equals(session.profile)) {
+            HasNetworkConditions browser = (HasNetworkConditions) session.browser;
+            if (profile.equals(NO_PROFILE)) {
+                browser.deleteNetworkConditions();
+            } else {
+                browser.setNetworkConditions(conditions(profile));
+            }
+            session.profile = profile;
+        }
+    }
+
+    /**
+     * Call it after every scenario, before its browser is closed. Adds what the network layer saved to the report of the scenario.
+     */
+    public static void finishScenario(Scenario scenario) {
+        NetworkSession session = current.get();
+        current.remove();
+        if (session == null) {
+            return;
+        }
+        scenarios.incrementAndGet();
+        if (!session.profile.equals(NO_PROFILE)) {
+            throttledScenarios.incrementAndGet();
+        }
+        long blocked = session.blocked.get();
+        long cached = session.cached.get();
+        long bytes = session.bytes.get();
+        blockedRequests.addAndGet(blocked);
+        cachedRequests.addAndGet(cached);
+        cachedBytes.addAndGet(bytes);
+        storeHits.addAndGet(session.hits.get());
+        storeMisses.addAndGet(session.misses.get());
+        storedResponses.addAndGet(session.stored.get());
+        if (blocked > 0 || cached > 0 || !session.profile.equals(NO_PROFILE)) {
+            scenario.log("Network: blocked " + blocked + " requests, served " + cached + " from the local cache ("
+                    + bytes / 1024 + " KB), profile: " + session.profile);
+        }
+        if (session.responseStore.getMode() != ResponseStore.Mode.OFF) {
+            scenario.log("Response store (" + session.responseStore.getMode().name().toLowerCase() + "): served " + session.hits.get()
+                    + ", stored " + session.stored.get() + ", not stored " + session.misses.get());
+        }
+    }
+
+    //runs on the DevTools connection thread, it must always answer the paused request
+    private static void handle(DevTools devTools, NetworkSession session, Map<String, Object> paused) {
+        String requestId = (String) paused.get("requestId");
+        Map<?, ?> request = (Map<?, ?>) paused.get("request");
+        String url = (String) request.get("url");
+        boolean get = "GET".equals(request.get("method"));
+        try {
+            if (paused.containsKey("responseStatusCode") || paused.containsKey("responseErrorReason")) {
+                if (get && paused.containsKey("responseStatusCode")) {
+                    store(devTools, session, requestId, url, paused);
+                }
+                devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+                return;
+            }
+            if (matches(session.block, url)) {
+                devTools.send(new Command<>("Fetch.failRequest", Map.of("requestId", requestId, "errorReason", "BlockedByClient")));
+                session.blocked.incrementAndGet();
+                return;
+            }
+            Path file = matches(session.cache, url) ? cachedFile(session.cacheDir, url) : null;
+            if (file != null) {
+                byte[] body = Files.readAllBytes(file);
+                devTools.send(new Command<>("Fetch.fulfillRequest", Map.of(
+                        "requestId", requestId,
+                        "responseCode", 200,
+                        //fonts and scripts are often loaded cross-origin
+                        "responseHeaders", List.of(
+                                Map.of("name", "Content-Type", "value", contentType(file)),
+                                Map.of("name", "Access-Control-Allow-Origin", "value", "*")),
+                        "body", Base64.getEncoder().encodeToString(body))));
+                session.cached.incrementAndGet();
+                session.bytes.addAndGet(body.length);
+                return;
+            }
+            if (matches(session.store, url)) {
+                Map<String, Object> stored = get ? session.responseStore.find(url) : null;
+                if (stored != null) {
+                    devTools.send(new Command<>("Fetch.fulfillRequest", Map.of(
+                            "requestId", requestId,
+                            "responseCode", ((Number) stored.get("status")).intValue(),
+                            "responseHeaders", stored.get("headers"),
+                            "body", stored.get("body"))));
+                    session.hits.incrementAndGet();
+                    return;
+                }
+                if (session.responseStore.getMode() == ResponseStore.Mode.OFFLINE) {
+                    System.out.println("Not in the response store (offline): " + request.get("method") + " " + url);
+                    devTools.send(new Command<>("Fetch.failRequest", Map.of("requestId", requestId, "errorReason", "InternetDisconnected")));
+                    session.misses.incrementAndGet();
+                    return;
+                }
+            }
+            devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not handle the request " + url + ": " + e.getMessage());
+            try {
+                devTools.send(new Command<>("Fetch.continueRequest", Map.of("requestId", requestId)));
+            } catch (RuntimeException ignored) {
+                //the browser or the page is already gone
+            }
+        }
+    }
+
+    /*
+    Stores a response that arrived from the network. 304 (the browser's own cache) and errors are not stored,
+    and a redirect has no body, the browser follows its Location header.
+     */
+    @SuppressWarnings("unchecked")
+    private static void store(DevTools devTools, NetworkSession session, String requestId, String url, Map<String, Object> paused) {
+        int status = ((Number) paused.get("responseStatusCode")).intValue();
+        if (status < 200 || status >= 400 || status == 304) {
+            return;
+        }
+        String body = "";
+        if (status < 300) {
+            Map<String, Object> response = devTools.send(new Command<>("Fetch.getResponseBody", Map.of("requestId", requestId),
+                    input -> input.read(Json.MAP_TYPE)));
+            body = (String) response.get("body");
+            if (!Boolean.TRUE.equals(response.get("base64Encoded"))) {
+                body = Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        List<Map<String, Object>> headers = (List<Map<String, Object>>) paused.getOrDefault("responseHeaders", List.of());
+        session.responseStore.save(url, status, headers, body);
+        session.stored.incrementAndGet();
+    }
+
+    //<network.cache.dir>/<host>/<path>, "index.html" for a path ending with "/", null if the file is not there
+    private static Path cachedFile(Path cacheDir, String url) {
+        URI uri = URI.create(url);
+        if (uri.getHost() == null) {
+            return null;
+        }
+        String path = uri.getPath() == null || uri.getPath().isEmpty() ? "/" : uri.getPath();
+        if (path.endsWith("/")) {
+            path += "index.html";
+        }
+        Path file = cacheDir.resolve(uri.getHost() + path).normalize();
+        //"../" in the URL must not read files outside of the cache
+        return file.startsWith(cacheDir) && Files.isRegularFile(file) ? file : null;
+    }
+
+    private static String contentType(Path file) throws IOException {
+        String type = URLConnection.guessContentTypeFromName(file.getFileName().toString());
+        if (type == null) {
+            type = Files.probeContentType(file);
+        }
+        return type == null ? "application/octet-stream" : type;
+    }
+
+    /*
+    A named profile (see PROFILES) or "latency ms/download KB/s/upload KB/s", e.g. 300/500/250
+     */
+    private static ChromiumNetworkConditions conditions(String profile) {
+        ChromiumNetworkConditions conditions = new ChromiumNetworkConditions();
+        if (profile.equals("offline")) {
+            conditions.setOffline(true);
+            return conditions;
+        }
+        int[] values = PROFILES.get(profile);
+        if (values == null) {
+            String[] parts = profile.split("/");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Unknown network profile: " + profile
+                        + ", use one of " + PROFILES.keySet() + ", offline, none or latencyMs/downloadKBps/uploadKBps");
+            }
+            values = new int[]{Integer.parseInt(parts[0].trim()),
+                    Integer.parseInt(parts[1].trim()) * 1024,
+                    Integer.parseInt(parts[2].trim()) * 1024};
+        }
+        conditions.setLatency(Duration.ofMillis(values[0]));
+        conditions.setDownloadThroughput(values[1]);
+        conditions.setUploadThroughput(values[2]);
+        return conditions;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String url) {
+        for (Pattern each : patterns) {
+            if (each.matcher(url).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //CDP URL pattern -> regex: "*" is any text, "?" is one character, "\" escapes the next character
+    private static Pattern toRegex(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static List<String> list(String keyword) {
+        List<String> values = new ArrayList<>();
+        for (String each : ConfigurationReader.getProperty(keyword, "").split(",")) {
+            if (!each.isBlank()) {
+                values.add(each.trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return one line summary of the requests and bytes the network layer saved in the run
+     */
+    public static String report() {
+        return "NetworkControl scenarios=" + scenarios.get()
+                + ", throttled=" + throttledScenarios.get()
+                + ", blockedRequests=" + blockedRequests.get()
+                + ", cachedRequests=" + cachedRequests.get()
+                + ", cachedKB=" + cachedBytes.get() / 1024
+                + ", storeHits=" + storeHits.get()
+                + ", storeMisses=" + storeMisses.get()
+                + ", storedResponses=" + storedResponses.get();
+    }
+
+}
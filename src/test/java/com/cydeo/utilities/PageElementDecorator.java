@@ -0,0 +1,27 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.pagefactory.DefaultFieldDecorator;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+
+/*
+Used by the page objects instead of PageFactory.initElements(driver, this):
+
+    PageFactory.initElements(new PageElementDecorator(), this);
+
+Works like the default PageFactory proxies, but elements are located lazily and cached (see PageElementLocatorFactory).
+Every call on an element recovers from stale, intercepted and not interactable errors (see ElementRecovery):
+a stale element is located again from its @FindBy and the call is repeated, until "element.retry.timeout".
+ */
+public class PageElementDecorator extends DefaultFieldDecorator {
+
+    public PageElementDecorator() {
+        super(new PageElementLocatorFactory());
+    }
+
+    @Override
+    protected WebElement proxyForLocator(ClassLoader loader, ElementLocator locator) {
+        return ElementRecovery.proxy(loader, locator);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.pagefactory.Annotations;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+import org.openqa.selenium.support.pagefactory.ElementLocatorFactory;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+Creates the locators of the page objects' @FindBy fields.
+
+- Lazy: the driver is only asked for when an element is used, so creating a page object never starts a browser.
+- Not waiting: an element is looked up once, the driver has no implicit wait either.
+  The caller's explicit wait does the polling (e.g. BrowserUtils.waitForVisibility, WaitEngine ignores NotFoundException),
+  so its timeout is the only one, and a check that an element is not there returns right away.
+- Caching: a located element is kept until it goes stale (see PageElementDecorator) or the thread gets another browser.
+ */
+public class PageElementLocatorFactory implements ElementLocatorFactory {
+
+    private final Supplier<SearchContext> searchContext;
+
+    /**
+     * Locates the elements in the browser of the current thread, see Driver.getDriver()
+     */
+    public PageElementLocatorFactory() {
+        this(Driver::getDriver);
+    }
+
+    public PageElementLocatorFactory(Supplier<SearchContext> searchContext) {
+        this.searchContext = searchContext;
+    }
+
+    @Override
+    public ElementLocator createLocator(Field field) {
+        return new CachingElementLocator(searchContext, new Annotations(field).buildBy());
+    }
+
+    /**
+     * Locator that remembers the element it found. Lists are always located again, since their size can change.
+     */
+    static class CachingElementLocator implements ElementLocator {
+
+        private final Supplier<SearchContext> searchContext;
+        private final By by;
+
+        private WebElement cachedElement;
+        private SearchContext cachedIn;
+
+        CachingElementLocator(Supplier<SearchContext> searchContext, By by) {
+            this.searchContext = searchContext;
+            this.by = by;
+        }
+
+        By getBy() {
+            return by;
+        }
+
+        /**
+         * Forgets the cached element, e.g. after it went stale.
+         */
+        void invalidate() {
+            cachedElement = null;
+            cachedIn = null;
+        }
+
+        @Override
+        public WebElement findElement() {
+            SearchContext context = searchContext.get();
+            if (cachedElement != null && cachedIn == context) {
+                return cachedElement;
+            }
+            cachedElement = context.findElement(by);
+            cachedIn = context;
+            return cachedElement;
+        }
+
+        @Override
+        public List<WebElement> findElements() {
+            return searchContext.get().findElements(by);
+        }
+
+        @Override
+        public String toString() {
+            return "CachingElementLocator{by=" + by + "}";
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.pagefactory.Annotations;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Title, URL and the texts of some elements of the current page, read from the browser in one scripted call.
+
+A step captures the page once, and the following Then steps assert against the snapshot instead of calling
+getText() on every element (one round trip each). Use it with SoftAssertions to see all the differences at once.
+
+Usage:
+    PageSnapshot.capture(wikiResultPage, "mainHeader", "imageHeader");
+    SoftAssertions.assertEquals("Main header", expected, PageSnapshot.current().text("mainHeader"));
+
+The snapshot belongs to the scenario running on the thread, and it is cleared after every scenario (see Hooks).
+ */
+public class PageSnapshot {
+
+    /*
+    The locators are W3C locators (By.id is sent as a css selector), so only a few strategies are needed here.
+    A missing element has null as its text.
+     */
+    private static final String CAPTURE_SCRIPT =
+            "var locators = arguments[0], result = { title: document.title, url: location.href, texts: {} };" +
+            "Object.keys(locators).forEach(function (name) {" +
+            "  var using = locators[name][0], value = locators[name][1], element = null;" +
+            "  if (using === 'xpath') {" +
+            "    element = document.evaluate(value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;" +
+            "  } else if (using === 'tag name') {" +
+            "    element = document.getElementsByTagName(value)[0] || null;" +
+            "  } else {" +
+            "    element = document.querySelector(value);" +
+            "  }" +
+            "  result.texts[name] = element ? element.innerText.trim() : null;" +
+            "});" +
+            "return result;";
+
+    private static final ThreadLocal<PageSnapshot> current = new ThreadLocal<>();
+
+    private final String title;
+    private final String url;
+    private final Map<String, String> texts;
+
+    private PageSnapshot(String title, String url, Map<String, String> texts) {
+        this.title = title;
+        this.url = url;
+        this.texts = texts;
+    }
+
+    /**
+     * Captures the page with the texts of the given @FindBy fields of the page object, and keeps it as current().
+     * Waits (see WaitEngine) until all the elements are on the page, e.g. right after a click that opens the page.
+     *
+     * @param page       page object, e.g. Pages.get(WikiResultPage.class)
+     * @param fieldNames names of its @FindBy fields, they are the names of the texts in the snapshot
+     */
+    public static PageSnapshot capture(Object page, String... fieldNames) {
+        Map<String, By> locators = new LinkedHashMap<>();
+        for (String each : fieldNames) {
+            try {
+                locators.put(each, new Annotations(page.getClass().getDeclaredField(each)).buildBy());
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException(page.getClass().getSimpleName() + " has no field " + each, e);
+            }
+        }
+        return capture(locators);
+    }
+
+    /**
+     * Captures the page with the texts of the elements matching the locators, and keeps it as current().
+     *
+     * @param locators name of the text in the snapshot -> locator of the element
+     */
+    public static PageSnapshot capture(Map<String, By> locators) {
+        Map<String, List<Object>> arguments = new LinkedHashMap<>();
+        locators.forEach((name, by) -> arguments.put(name, remote(by)));
+
+        PageSnapshot snapshot;
+        try {
+            snapshot = WaitEngine.until((WebDriver driver) -> {
+                PageSnapshot each = read(driver, arguments);
+                return each.texts.containsValue(null) ? null : each;
+            });
+        } catch (TimeoutException e) {
+            //the missing elements stay null, so the assertions on them fail with a clear message
+            snapshot = read(Driver.getDriver(), arguments);
+        }
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PageSnapshot read(WebDriver driver, Map<String, List<Object>> arguments) {
+        Map<String, Object> result = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_SCRIPT, arguments);
+        Map<String, String> texts = new LinkedHashMap<>();
+        ((Map<String, Object>) result.get("texts")).forEach((name, text) -> texts.put(name, (String) text));
+        return new PageSnapshot((String) result.get("title"), (String) result.get("url"), texts);
+    }
+
+    //[using, value] of the locator, e.g. By.id("firstHeading") -> [css selector, #firstHeading]
+    private static List<Object> remote(By by) {
+        if (!(by instanceof By.Remotable)) {
+            throw new IllegalArgumentException("Locator is not supported in a page snapshot: " + by);
+        }
+        By.Remotable.Parameters parameters = ((By.Remotable) by).getRemoteParameters();
+        String using = parameters.using();
+        if (!using.equals("css selector") && !using.equals("xpath") && !using.equals("tag name")) {
+            throw new IllegalArgumentException("Locator is not supported in a page snapshot: " + by);
+        }
+        return List.of(using, parameters.value());
+    }
+
+    /**
+     * @return the snapshot captured last in the current scenario
+     * @throws IllegalStateException if the scenario did not capture one
+     */
+    public static PageSnapshot current() {
+        PageSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            throw new IllegalStateException("No page snapshot in this scenario, capture the page first");
+        }
+        return snapshot;
+    }
+
+    /**
+     * Forgets the snapshot of the current thread, call it after every scenario.
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return visible text of the element, null if it was not on the page
+     */
+    public String text(String name) {
+        if (!texts.containsKey(name)) {
+            throw new IllegalArgumentException("The page snapshot has no text named " + name + ", only " + texts.keySet());
+        }
+        return texts.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return "PageSnapshot{title=" + title + ", url=" + url + ", texts=" + texts + "}";
+    }
+
+}
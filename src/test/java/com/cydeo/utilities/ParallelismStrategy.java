@@ -0,0 +1,56 @@
+package com.cydeo.utilities;
+
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfiguration;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfigurationStrategy;
+
+/*
+Tells the Cucumber JUnit Platform engine how many scenarios to run at the same time.
+The value comes from "parallel.threads" in configuration.properties, and defaults to the number of cores.
+Browsers are limited separately by "driver.pool.size", so "parallel.threads" can be much higher when most scenarios do not need one.
+
+A worker that waits for a browser (see ScenarioScheduler) is replaced by a spare one, so "parallel.threads" scenarios
+keep running. There can be as many of those spare workers as regular ones,
+and the same number again is left for the JUnit Platform, which also replaces the workers that wait for their child tasks.
+ */
+public class ParallelismStrategy implements ParallelExecutionConfigurationStrategy {
+
+    /**
+     * @return number of scenarios that run in parallel
+     */
+    public static int threadCount() {
+        return ConfigurationReader.getInt("parallel.threads");
+    }
+
+    @Override
+    public ParallelExecutionConfiguration createConfiguration(ConfigurationParameters configurationParameters) {
+        int threads = threadCount();
+        return new ParallelExecutionConfiguration() {
+            @Override
+            public int getParallelism() {
+                return threads;
+            }
+
+            @Override
+            public int getMinimumRunnable() {
+                return threads;
+            }
+
+            @Override
+            public int getMaxPoolSize() {
+                return threads * 3;
+            }
+
+            @Override
+            public int getCorePoolSize() {
+                return threads;
+            }
+
+            @Override
+            public int getKeepAliveSeconds() {
+                return 30;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+Responses of the sites under test kept on disk, so the UI scenarios do not depend on the internet (see NetworkControl).
+
+"network.store.mode":
+- off     : nothing is stored or served
+- cache   : a stored response younger than "network.store.maxAge" is served, everything else is fetched and stored
+- offline : only stored responses are served (of any age), every other request of the stored sites fails
+
+Every response is one JSON file: <network.store.dir>/<host>/<sha-256 of the URL>.json
+Only GET requests are stored, and a file is written to a temporary name first, so parallel browsers never read half a file.
+ */
+class ResponseStore {
+
+    enum Mode {OFF, CACHE, OFFLINE}
+
+    //the body is stored decoded, and its length changes with the encoding
+    private static final Set<String> DROPPED_HEADERS = Set.of("content-encoding", "content-length", "transfer-encoding");
+
+    private final Path dir;
+    private final Duration maxAge;
+    private final Mode mode;
+
+    ResponseStore(Mode mode) {
+        this.mode = mode;
+        this.dir = Paths.get(ConfigurationReader.getProperty("network.store.dir")).toAbsolutePath().normalize();
+        this.maxAge = ConfigurationReader.getDuration("network.store.maxAge");
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the stored response of the URL, or null if there is none (or it is too old, in cache mode)
+     */
+    Map<String, Object> find(String url) {
+        Path file = file(url);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            Map<String, Object> response = new Json().toType(Files.readString(file, StandardCharsets.UTF_8), Json.MAP_TYPE);
+            long age = System.currentTimeMillis() - ((Number) response.get("storedAt")).longValue();
+            if (mode == Mode.CACHE && age > maxAge.toMillis()) {
+                return null;
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            //a broken file is fetched and stored again
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response of the URL.
+     *
+     * @param headers as CDP sends them, [{"name": .., "value": ..}]
+     * @param body    base64 encoded body
+     */
+    void save(String url, int status, List<Map<String, Object>> headers, String body) {
+        Path file = file(url);
+        if (file == null) {
+            return;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("url", url);
+        response.put("storedAt", System.currentTimeMillis());
+        response.put("status", status);
+        response.put("headers", headers.stream()
+                .filter(each -> !DROPPED_HEADERS.contains(String.valueOf(each.get("name")).toLowerCase()))
+                .toList());
+        response.put("body", body);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.writeString(temporary, new Json().toJson(response), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not store the response of " + url + ": " + e.getMessage());
+        }
+    }
+
+    private Path file(String url) {
+        String host = URI.create(url).getHost();
+        if (host == null) {
+            return null;
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return dir.resolve(host).resolve(HexFormat.of().formatHex(hash) + ".json");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.cydeo.utilities;
+
+import io.cucumber.java.Scenario;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Runs the identical beginning of several scenarios only once ("checkpoint.enabled", off by default).
+
+The steps of the scenarios that run are put into a prefix tree (see CheckpointPlugin and CheckpointSelection), e.g. the duplicated Etsy "Wooden Spoon"
+scenarios share all their steps until the Then step. The first scenario that goes through a shared prefix captures the
+browser state at its end: URL, cookies, localStorage and sessionStorage. The next scenarios with the same prefix get that
+state in their own browser, and the steps of the prefix return right away. Every scenario still runs and reports all of its
+steps, the restored ones are only instant, and the scenario gets a line in the report about the restore.
+
+Only step definitions that opt in can be skipped, because a checkpoint only holds the browser state:
+    skipNavigation() : the step ends on a page that its URL brings back, e.g. opening a page or clicking a search button
+    skipInput()      : the step only changes the current page, e.g. typing, so there is no checkpoint right after it
+A step that keeps anything in Java (e.g. a PageSnapshot) or asserts something must not call them.
+
+Limits:
+- A checkpoint saves at least two steps, since restoring it costs a page load too.
+- Scenarios that run at the same time do not wait for each other's checkpoints, they only use the ones that are ready.
+- Retries and recorded scenarios always run all their steps.
+ */
+public class ScenarioCheckpoints {
+
+    private ScenarioCheckpoints() {}
+
+    private static final int MIN_RESTORED_STEPS = 2;
+
+    private static class Node {
+        final Map<String, Node> children = new ConcurrentHashMap<>();
+        final AtomicInteger scenarios = new AtomicInteger();
+        final AtomicBoolean capturing = new AtomicBoolean();
+        volatile Checkpoint checkpoint;
+    }
+
+    private static class Checkpoint {
+        String scenario;
+        String url;
+        Set<Cookie> cookies;
+        Map<String, String> localStorage;
+        Map<String, String> sessionStorage;
+    }
+
+    //the scenario running on the thread
+    private static class Run {
+        //path.get(i) is the node after the first i + 1 steps
+        final List<Node> path = new ArrayList<>();
+        int step = -1;
+        //how many steps from the beginning can be skipped, and whether the last of them was a navigation
+        int skippable;
+        boolean navigation;
+        Checkpoint restoreFrom;
+        int restoreDepth;
+        boolean restored;
+    }
+
+    private static volatile Node root = new Node();
+    //"uri:line" of the scenarios in the test plan, null if it is not known (then every scenario counts)
+    private static volatile Set<String> selected;
+    private static final ThreadLocal<Run> current = new ThreadLocal<>();
+
+    private static final AtomicLong captured = new AtomicLong();
+    private static final AtomicLong restoredScenarios = new AtomicLong();
+    private static final AtomicLong skippedSteps = new AtomicLong();
+
+    public static boolean isEnabled() {
+        return ConfigurationReader.getBoolean("checkpoint.enabled") && !CommandTape.isActive();
+    }
+
+    /**
+     * Forgets the prefix tree and the checkpoints, call it when a run (or a retry) starts.
+     */
+    public static void reset() {
+        root = new Node();
+    }
+
+    /**
+     * Only the given scenarios are added to the prefix tree from now on, call it before the features are parsed.
+     *
+     * @param scenarios "uri:line" of the scenarios that will run, e.g. "classpath:features/Login.feature:5"
+     */
+    public static void select(Set<String> scenarios) {
+        selected = Set.copyOf(scenarios);
+    }
+
+    /**
+     * Adds a scenario to the prefix tree, if it is selected to run.
+     *
+     * @param scenario "uri:line" of the scenario (of the examples row for a scenario outline)
+     * @param steps    one key per step, the text and the argument of the step
+     */
+    public static void addScenario(String scenario, List<String> steps) {
+        Set<String> scenarios = selected;
+        if (scenarios != null && !scenarios.contains(scenario)) {
+            return;
+        }
+        Node node = root;
+        for (String each : steps) {
+            node = node.children.computeIfAbsent(each, key -> new Node());
+            node.scenarios.incrementAndGet();
+        }
+    }
+
+    /**
+     * The current thread starts to run the scenario with the given steps.
+     * The deepest checkpoint on its path (if there is one) is restored when its first step runs.
+     */
+    public static void startScenario(List<String> steps) {
+        if (!isEnabled()) {
+            current.remove();
+            return;
+        }
+        Run run = new Run();
+        Node node = root;
+        for (String each : steps) {
+            node = node.children.get(each);
+            if (node == null) {
+                break;
+            }
+            run.path.add(node);
+        }
+        for (int depth = run.path.size(); depth >= MIN_RESTORED_STEPS; depth--) {
+            Checkpoint checkpoint = run.path.get(depth - 1).checkpoint;
+            if (checkpoint != null) {
+                run.restoreFrom = checkpoint;
+                run.restoreDepth = depth;
+                break;
+            }
+        }
+        current.set(run);
+    }
+
+    /**
+     * The next step of the current scenario starts.
+     */
+    public static void startStep() {
+        Run run = current.get();
+        if (run != null) {
+            run.step++;
+        }
+    }
+
+    public static void finishScenario() {
+        current.remove();
+    }
+
+    /**
+     * The current scenario runs all of its steps, e.g. because it is a retry.
+     */
+    public static void runAllSteps() {
+        Run run = current.get();
+        if (run != null) {
+            run.restoreFrom = null;
+            run.restoreDepth = 0;
+        }
+    }
+
+    /**
+     * For steps that end on a page that its URL (with the cookies and the storage) brings back, e.g. opening a page.
+     *
+     * @return true if the state after this step was restored from a checkpoint, so the step has nothing to do
+     */
+    public static boolean skipNavigation() {
+        return skip(true);
+    }
+
+    /**
+     * For steps that only change the current page, e.g. typing into a field.
+     *
+     * @return true if the state after this step was restored from a checkpoint, so the step has nothing to do
+     */
+    public static boolean skipInput() {
+        return skip(false);
+    }
+
+    private static boolean skip(boolean navigation) {
+        Run run = current.get();
+        if (run == null) {
+            return false;
+        }
+        if (run.skippable == run.step) {
+            run.skippable++;
+            run.navigation = navigation;
+        }
+        if (run.step >= run.restoreDepth) {
+            return false;
+        }
+        if (!run.restored) {
+            restore(Driver.getDriver(), run.restoreFrom);
+            run.restored = true;
+            restoredScenarios.incrementAndGet();
+        }
+        skippedSteps.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Call it after every step. Captures a checkpoint after a shared prefix, if no other scenario did it yet.
+     */
+    public static void afterStep(Scenario scenario) {
+        Run run = current.get();
+        if (run == null || scenario.isFailed()) {
+            return;
+        }
+        int depth = run.step + 1;
+        if (run.restored && depth == run.restoreDepth) {
+            scenario.log("Steps 1-" + depth + " were restored from the checkpoint of '" + run.restoreFrom.scenario + "'");
+        }
+        if (depth < MIN_RESTORED_STEPS || depth > run.path.size() || run.skippable != depth || !run.navigation) {
+            return;
+        }
+        Node node = run.path.get(depth - 1);
+        if (node.scenarios.get() < 2 || node.checkpoint != null || !Driver.hasDriver() || !node.capturing.compareAndSet(false, true)) {
+            return;
+        }
+        node.checkpoint = capture(Driver.getDriver(), scenario.getName());
+        captured.incrementAndGet();
+    }
+
+    private static Checkpoint capture(WebDriver driver, String scenario) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.scenario = scenario;
+        checkpoint.url = driver.getCurrentUrl();
+        checkpoint.cookies = Set.copyOf(driver.manage().getCookies());
+        checkpoint.localStorage = LoginStateCache.readStorage(driver, "localStorage");
+        checkpoint.sessionStorage = LoginStateCache.readStorage(driver, "sessionStorage");
+        return checkpoint;
+    }
+
+    private static void restore(WebDriver driver, Checkpoint checkpoint) {
+        //Chromium browsers take the cookies of any domain, the others only the ones of the current page
+        boolean cdp = driver instanceof HasCdp;
+        if (cdp) {
+            for (Cookie each : checkpoint.cookies) {
+                ((HasCdp) driver).executeCdpCommand("Network.setCookie", cdpCookie(checkpoint.url, each));
+            }
+        }
+        boolean storage = !checkpoint.localStorage.isEmpty() || !checkpoint.sessionStorage.isEmpty();
+        if (storage || (!cdp && !checkpoint.cookies.isEmpty())) {
+            driver.get(checkpoint.url);
+            if (!cdp) {
+                for (Cookie each : checkpoint.cookies) {
+                    driver.manage().addCookie(new Cookie.Builder(each.getName(), each.getValue())
+                            .path(each.getPath())
+                            .expiresOn(each.getExpiry() == null ? null : new Date(each.getExpiry().getTime()))
+                            .isSecure(each.isSecure())
+                            .isHttpOnly(each.isHttpOnly())
+                            .sameSite(each.getSameSite())
+                            .build());
+                }
+            }
+            LoginStateCache.writeStorage(driver, "localStorage", checkpoint.localStorage);
+            LoginStateCache.writeStorage(driver, "sessionStorage", checkpoint.sessionStorage);
+        }
+        driver.get(checkpoint.url);
+    }
+
+    private static Map<String, Object> cdpCookie(String url, Cookie cookie) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("name", cookie.getName());
+        parameters.put("value", cookie.getValue());
+        parameters.put("url", url);
+        if (cookie.getDomain() != null) {
+            parameters.put("domain", cookie.getDomain());
+        }
+        parameters.put("path", cookie.getPath() == null ? "/" : cookie.getPath());
+        parameters.put("secure", cookie.isSecure());
+        parameters.put("httpOnly", cookie.isHttpOnly());
+        if (cookie.getSameSite() != null) {
+            parameters.put("sameSite", cookie.getSameSite());
+        }
+        if (cookie.getExpiry() != null) {
+            parameters.put("expires", cookie.getExpiry().getTime() / 1000);
+        }
+        return parameters;
+    }
+
+    /**
+     * @return one line summary of the checkpoints and the steps they saved
+     */
+    public static String report() {
+        return "ScenarioCheckpoints[" + (isEnabled() ? "on" : "off") + "] captured=" + captured.get()
+                + ", restoredScenarios=" + restoredScenarios.get()
+                + ", skippedSteps=" + skippedSteps.get();
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.cydeo.utilities;
+
+import io.cucumber.java.Scenario;
+import io.cucumber.java.Status;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Keeps track of the attempts of every scenario, so failed scenarios can be retried in the same JVM.
+
+Surefire re-runs the failed scenarios right after the first run ("retry.count" in pom.xml, e.g. mvn test -Dretry.count=0 to turn it off).
+The retries are executed by the same Cucumber engine, so they run in parallel like the first run (see junit-platform.properties).
+Before a retry, Hooks asks this class:
+    - to wait for the backoff ("retry.backoff" in configuration.properties, doubled on every attempt)
+    - to give the scenario a freshly launched browser instead of a warm one from the pool
+At the end, the scenarios are classified as passed, flaky (failed, then passed on a retry) or hard failures (never passed).
+ */
+public class ScenarioRetry {
+
+    private ScenarioRetry() {}
+
+    private static final Path REPORT = Paths.get("target", "retry-report.json");
+
+    //"uri:line" of the scenario -> one entry per attempt
+    private static final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+    private static class Attempts {
+        private final String name;
+        private final List<Status> statuses = new ArrayList<>();
+        private long lastFinishedMillis;
+
+        private Attempts(String name) {
+            this.name = name;
+        }
+    }
+
+    private static String key(Scenario scenario) {
+        return scenario.getUri() + ":" + scenario.getLine();
+    }
+
+    /**
+     * Call it before every scenario. If the scenario is being retried, waits for the backoff and
+     * makes sure the retry does not run on a browser that was used before.
+     *
+     * @return number of the attempt, 1 for the first run
+     */
+    public static int beforeScenario(Scenario scenario) {
+        Attempts previous = attempts.computeIfAbsent(key(scenario), k -> new Attempts(scenario.getName()));
+        int attempt;
+        long lastFinished;
+        synchronized (previous) {
+            attempt = previous.statuses.size() + 1;
+            lastFinished = previous.lastFinishedMillis;
+        }
+        if (attempt == 1) {
+            return attempt;
+        }
+
+        //the rest of the run already counts as waiting, so usually there is nothing left to sleep
+        long backoff = ConfigurationReader.getDuration("retry.backoff").toMillis() << Math.min(attempt - 2, 10);
+        long remaining = lastFinished + backoff - System.currentTimeMillis();
+        System.out.println("---> Retrying '" + scenario.getName() + "', attempt " + attempt
+                + (remaining > 0 ? ", backing off " + remaining + " ms" : ""));
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        Driver.useFreshDriver();
+        return attempt;
+    }
+
+    /**
+     * Call it after every scenario to record the result of the attempt.
+     */
+    public static void afterScenario(Scenario scenario) {
+        Attempts current = attempts.computeIfAbsent(key(scenario), k -> new Attempts(scenario.getName()));
+        synchronized (current) {
+            current.statuses.add(scenario.getStatus());
+            current.lastFinishedMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Writes target/retry-report.json with the passed, flaky and hard failed scenarios of all the attempts so far.
+     * It is called after the first run and after every retry, so the last one written is the final result.
+     *
+     * @return one line summary
+     */
+    public static String report() {
+        int passed = 0;
+        List<Map<String, Object>> flaky = new ArrayList<>();
+        List<Map<String, Object>> hardFailures = new ArrayList<>();
+
+        for (Map.Entry<String, Attempts> each : new TreeMap<>(attempts).entrySet()) {
+            List<Status> statuses;
+            synchronized (each.getValue()) {
+                statuses = List.copyOf(each.getValue().statuses);
+            }
+            if (statuses.isEmpty()) {
+                continue;
+            }
+            boolean failedOnce = statuses.contains(Status.FAILED);
+            boolean passedLast = statuses.get(statuses.size() - 1) != Status.FAILED;
+
+            Map<String, Object> scenario = new LinkedHashMap<>();
+            scenario.put("name", each.getValue().name);
+            scenario.put("location", each.getKey());
+            scenario.put("attempts", statuses);
+
+            if (!failedOnce) {
+                passed++;
+            } else if (passedLast) {
+                flaky.add(scenario);
+            } else {
+                hardFailures.add(scenario);
+            }
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("passed", passed);
+        summary.put("flaky", flaky);
+        summary.put("hardFailures", hardFailures);
+        try {
+            Files.createDirectories(REPORT.getParent());
+            Files.write(REPORT, new Json().toJson(summary).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Failed to write the retry report: " + e.getMessage());
+        }
+
+        return "Retry report: passed=" + passed + ", flaky=" + flaky.size() + ", hardFailures=" + hardFailures.size()
+                + " (" + REPORT + ")";
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.cydeo.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Lets the scenarios that do not need a browser run with a much higher concurrency than the ones that do.
+
+"parallel.threads" is how many scenarios run at the same time, "driver.pool.size" is how many of them may use a browser.
+Scenarios tagged @ui take a browser slot before they start (see Hooks), all the others start right away.
+
+The scenarios run on the ForkJoinPool of the JUnit Platform. A worker that waits for a browser slot tells the pool
+(ForkJoinPool.managedBlock), and the pool starts a spare worker, so the scenarios without a browser keep running
+while the @ui ones are queued. See ParallelismStrategy for how many spare workers there can be.
+ */
+public class ScenarioScheduler {
+
+    private ScenarioScheduler() {}
+
+    private static final Semaphore browserSlots = new Semaphore(maxBrowsers(), true);
+
+    //workers that are waiting for a permit, each of them may be replaced by a spare worker
+    private static final AtomicInteger spareWorkers = new AtomicInteger();
+
+    private static final ThreadLocal<Boolean> holdingSlot = ThreadLocal.withInitial(() -> false);
+
+    private static final AtomicLong uiScenarios = new AtomicLong();
+    private static final AtomicLong waitNanos = new AtomicLong();
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @return how many scenarios may use a browser at the same time ("driver.pool.size", or "parallel.threads" if empty)
+     */
+    public static int maxBrowsers() {
+        return Integer.parseInt(ConfigurationReader.getProperty("driver.pool.size", String.valueOf(ParallelismStrategy.threadCount())));
+    }
+
+    /**
+     * Waits until fewer than maxBrowsers() @ui scenarios are running, then takes a slot for the current scenario.
+     */
+    public static void acquireBrowserSlot() {
+        if (holdingSlot.get()) {
+            return;
+        }
+        long start = System.nanoTime();
+        acquire(browserSlots);
+        long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        uiScenarios.incrementAndGet();
+        holdingSlot.set(true);
+    }
+
+    /**
+     * Gives the slot of the current scenario back, if it has one.
+     */
+    public static void releaseBrowserSlot() {
+        if (holdingSlot.get()) {
+            holdingSlot.remove();
+            browserSlots.release();
+        }
+    }
+
+    /**
+     * Takes a permit of the semaphore. On a ForkJoinPool worker the pool may start a spare worker while this one waits.
+     */
+    public static void acquire(Semaphore semaphore) {
+        PermitBlocker blocker = new PermitBlocker(semaphore);
+        try {
+            //the rest of the spare workers are left to the JUnit Platform, it needs them while waiting for the scenarios
+            if (spareWorkers.incrementAndGet() <= ParallelismStrategy.threadCount()) {
+                try {
+                    ForkJoinPool.managedBlock(blocker);
+                } catch (RejectedExecutionException e) {
+                    //the pool already has all the workers it may have, so this one simply waits
+                    blocker.block();
+                }
+            } else {
+                blocker.block();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser slot", e);
+        } finally {
+            spareWorkers.decrementAndGet();
+        }
+    }
+
+    private static class PermitBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private final Semaphore semaphore;
+        private boolean acquired;
+
+        PermitBlocker(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                semaphore.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return acquired || (acquired = semaphore.tryAcquire());
+        }
+    }
+
+    /**
+     * @return one line summary of how long the @ui scenarios waited for a browser slot
+     */
+    public static String report() {
+        long count = uiScenarios.get();
+        return "ScenarioScheduler[threads=" + ParallelismStrategy.threadCount() + ", browsers=" + maxBrowsers()
+                + "] uiScenarios=" + count
+                + ", avgWaitMs=" + (count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.get() / count))
+                + ", maxWaitMs=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.cydeo.utilities;
+
+import com.cydeo.plugins.TimingReportPlugin;
+import io.cucumber.tagexpressions.Expression;
+import io.cucumber.tagexpressions.TagExpressionParser;
+import org.junit.platform.engine.FilterResult;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.ClasspathResourceSource;
+import org.junit.platform.engine.support.descriptor.FilePosition;
+import org.junit.platform.engine.support.descriptor.FileSource;
+import org.junit.platform.launcher.PostDiscoveryFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/*
+Splits the scenarios into N shards with balanced run time, so N CI nodes can run them side by side:
+    mvn test -Dshard=1/4     (on the 2nd node -Dshard=2/4, and so on)
+
+The durations of the previous run are read from "shard.durations" (written by TimingReportPlugin).
+The longest scenarios are placed first, always into the shard with the least time so far (longest processing time first).
+Scenarios without history count as the average scenario, and scenarios excluded by "cucumber.filter.tags" count as zero.
+Every node computes the same plan from the same file, so each scenario runs on exactly one node.
+Afterwards the reports of the shards are combined with ShardReportMerger.
+
+It is registered in META-INF/services, and does nothing when "shard" is not set.
+ */
+public class ShardFilter implements PostDiscoveryFilter {
+
+    private static final long DEFAULT_DURATION_MILLIS = 1000;
+
+    //computed only once per JVM, so the retries of failed scenarios (see ScenarioRetry) keep the plan of the first run
+    private static Map<String, Integer> plan;
+
+    @Override
+    public FilterResult apply(TestDescriptor descriptor) {
+        String shard = ConfigurationReader.getProperty("shard");
+        if (shard.isEmpty() || descriptor.getType() != TestDescriptor.Type.TEST) {
+            return FilterResult.included("not sharded");
+        }
+        String key = key(descriptor.getSource());
+        if (key == null) {
+            return FilterResult.included("no feature file location");
+        }
+
+        String[] parts = shard.split("/");
+        int index = Integer.parseInt(parts[0].trim()) - 1;
+        int count = Integer.parseInt(parts[1].trim());
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard: '" + shard + "', expected e.g. 1/4");
+        }
+
+        //a scenario that was not there when the plan was made, still goes to a stable shard
+        Integer assigned = plan(descriptor, count).get(key);
+        if (assigned == null) {
+            assigned = Math.floorMod(key.hashCode(), count);
+        }
+        return assigned == index
+                ? FilterResult.included("in shard " + shard)
+                : FilterResult.excluded("in shard " + (assigned + 1) + "/" + count);
+    }
+
+    private static synchronized Map<String, Integer> plan(TestDescriptor descriptor, int count) {
+        if (plan != null) {
+            return plan;
+        }
+
+        TestDescriptor root = descriptor;
+        while (root.getParent().isPresent()) {
+            root = root.getParent().get();
+        }
+
+        Map<String, Long> history;
+        try {
+            history = TimingReportPlugin.readDurations(Paths.get(ConfigurationReader.getProperty("shard.durations")));
+        } catch (IOException e) {
+            System.out.println("Could not read the scenario durations, shards are balanced by count: " + e.getMessage());
+            history = new HashMap<>();
+        }
+        long average = (long) history.values().stream().mapToLong(Long::longValue).average().orElse(DEFAULT_DURATION_MILLIS);
+
+        Expression tags = tagExpression();
+        Map<String, Long> weights = new HashMap<>();
+        for (TestDescriptor each : root.getDescendants()) {
+            String key = key(each.getSource());
+            if (each.getType() != TestDescriptor.Type.TEST || key == null) {
+                continue;
+            }
+            List<String> scenarioTags = each.getTags().stream().map(tag -> "@" + tag.getName()).collect(Collectors.toList());
+            weights.put(key, tags.evaluate(scenarioTags) ? history.getOrDefault(key, average) : 0L);
+        }
+
+        Map<String, Integer> assignments = assign(weights, count);
+
+        long[] loads = new long[count];
+        assignments.forEach((key, index) -> loads[index] += weights.get(key));
+        StringBuilder summary = new StringBuilder("Sharded " + weights.size() + " scenarios, estimated ms per shard:");
+        for (int i = 0; i < count; i++) {
+            summary.append(" ").append(i + 1).append("/").append(count).append("=").append(loads[i]);
+        }
+        System.out.println(summary);
+
+        plan = assignments;
+        return plan;
+    }
+
+    /**
+     * @param weights "uri:line" of the scenario -> estimated duration
+     * @param count   number of shards
+     * @return "uri:line" of the scenario -> index of its shard (0 based), the longest scenario always goes to the lightest shard
+     */
+    static Map<String, Integer> assign(Map<String, Long> weights, int count) {
+        List<String> longestFirst = new ArrayList<>(weights.keySet());
+        longestFirst.sort(Comparator.comparing((String key) -> weights.get(key)).reversed().thenComparing(key -> key));
+
+        Map<String, Integer> assignments = new HashMap<>();
+        long[] loads = new long[count];
+        for (String key : longestFirst) {
+            int lightest = 0;
+            for (int i = 1; i < count; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            assignments.put(key, lightest);
+            loads[lightest] += weights.get(key);
+        }
+        return assignments;
+    }
+
+    /**
+     * @return "uri:line" of the scenario, same as in durations.json, or null if the source is not a feature file
+     */
+    static String key(Optional<TestSource> source) {
+        if (source.isEmpty()) {
+            return null;
+        }
+        if (source.get() instanceof ClasspathResourceSource) {
+            ClasspathResourceSource resource = (ClasspathResourceSource) source.get();
+            return resource.getPosition().map(position -> "classpath:" + resource.getClasspathResourceName() + ":" + position.getLine())
+                    .orElse(null);
+        }
+        if (source.get() instanceof FileSource) {
+            FileSource file = (FileSource) source.get();
+            return file.getPosition().map(FilePosition::getLine).map(line -> file.getFile().toPath().toUri() + ":" + line)
+                    .orElse(null);
+        }
+        return null;
+    }
+
+    /*
+    Cucumber skips the scenarios that do not match the tags only while running them,
+    so the same expression is read here: -Dcucumber.filter.tags, or else junit-platform.properties
+     */
+    static Expression tagExpression() {
+        String tags = System.getProperty("cucumber.filter.tags");
+        if (tags == null) {
+            Properties properties = new Properties();
+            try (InputStream file = ShardFilter.class.getClassLoader().getResourceAsStream("junit-platform.properties")) {
+                if (file != null) {
+                    properties.load(file);
+                }
+            } catch (IOException e) {
+                System.out.println("Could not read junit-platform.properties: " + e.getMessage());
+            }
+            tags = properties.getProperty("cucumber.filter.tags");
+        }
+        return tags == null || tags.isBlank() ? scenarioTags -> true : TagExpressionParser.parse(tags);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.cydeo.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardFilterTest {
+
+    @Test
+    void longestScenarioGoesToTheLightestShard() {
+        Map<String, Integer> plan = ShardFilter.assign(Map.of("a", 500L, "b", 400L, "c", 300L, "d", 200L), 2);
+
+        //a=500 | b=400, c=300 -> 700 | d goes to the first shard, 700
+        assertEquals(Map.of("a", 0, "b", 1, "c", 1, "d", 0), plan);
+    }
+
+    @Test
+    void equalDurationsAreSplitInTheOrderOfTheirKeys() {
+        Map<String, Integer> plan = ShardFilter.assign(Map.of("c", 100L, "a", 100L, "b", 100L), 3);
+
+        assertEquals(Map.of("a", 0, "b", 1, "c", 2), plan);
+    }
+
+}
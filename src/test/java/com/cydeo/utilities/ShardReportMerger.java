@@ -0,0 +1,155 @@
+package com.cydeo.utilities;
+
+import com.cydeo.plugins.TimingReportPlugin;
+import net.masterthought.cucumber.Configuration;
+import net.masterthought.cucumber.ReportBuilder;
+import org.openqa.selenium.json.Json;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+Combines the results of the shards (see ShardFilter) into one report.
+Every CI node copies its "target" folder into a sub folder of the shards directory, e.g. shards/1, shards/2, ...
+Then, on one machine:
+    mvn -Pmerge-shards process-test-classes -Dshards.dir=shards
+
+It writes into target:
+- cucumber.json : all the scenarios of all the shards; for a retried scenario only its last attempt is kept
+- cucumber/ : html report of the merged json (same as the PrettyReports plugin)
+- rerun.txt : scenarios that still failed after the retries, in any of the shards
+- cucumber-timing/durations.json : durations of all the shards, to plan the shards of the next run
+  (every node starts from the same history and only updates its own scenarios, so the fresh durations are taken from
+  the timing.json of each shard, and its durations.json only adds the scenarios that did not run anywhere)
+ */
+public class ShardReportMerger {
+
+    private ShardReportMerger() {}
+
+    private static final Path OUTPUT = Paths.get("target");
+
+    public static void main(String[] args) throws IOException {
+        Path shardsDir = Paths.get(args.length > 0 ? args[0] : "shards");
+        List<Path> shards;
+        try (Stream<Path> children = Files.list(shardsDir)) {
+            shards = children.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+
+        //feature uri -> feature without its scenarios, and feature uri -> scenario line -> scenario with its background
+        Map<String, Map<String, Object>> features = new LinkedHashMap<>();
+        Map<String, Map<Long, List<Object>>> scenarios = new LinkedHashMap<>();
+        List<String> rerun = new ArrayList<>();
+
+        for (Path shard : shards) {
+            for (Path attempt : find(shard, "attempt-")) {
+                addAttempt(attempt, features, scenarios);
+            }
+            for (Path file : find(shard, "rerun.txt")) {
+                Files.readAllLines(file).stream().filter(line -> !line.isBlank()).forEach(rerun::add);
+            }
+        }
+        Map<String, Long> durations = mergeDurations(shards);
+
+        List<Map<String, Object>> merged = new ArrayList<>();
+        features.forEach((uri, feature) -> {
+            List<Object> elements = new ArrayList<>();
+            scenarios.get(uri).values().forEach(elements::addAll);
+            Map<String, Object> each = new LinkedHashMap<>(feature);
+            each.put("elements", elements);
+            merged.add(each);
+        });
+
+        Path json = OUTPUT.resolve("cucumber.json");
+        Files.createDirectories(OUTPUT.resolve("cucumber-timing"));
+        Files.write(json, new Json().toJson(merged).getBytes(StandardCharsets.UTF_8));
+        Files.write(OUTPUT.resolve("rerun.txt"), rerun);
+        Files.write(OUTPUT.resolve("cucumber-timing").resolve("durations.json"),
+                new Json().toJson(durations).getBytes(StandardCharsets.UTF_8));
+
+        Configuration configuration = new Configuration(OUTPUT.resolve("cucumber").toFile(), "cydeo-cucumber-junit-project");
+        new ReportBuilder(List.of(json.toString()), configuration).generateReports();
+
+        int scenarioCount = scenarios.values().stream().mapToInt(Map::size).sum();
+        System.out.println("Merged " + shards.size() + " shards: " + merged.size() + " features, " + scenarioCount
+                + " scenarios, " + rerun.size() + " rerun lines -> " + json);
+    }
+
+    /**
+     * @param shards directories of the shards, e.g. shards/1 and shards/2
+     * @return "uri:line" of the scenario -> duration in milliseconds, the ones measured in this run win over the history
+     */
+    static Map<String, Long> mergeDurations(List<Path> shards) throws IOException {
+        Map<String, Long> durations = new TreeMap<>();
+        for (Path shard : shards) {
+            for (Path file : find(shard, "durations.json")) {
+                TimingReportPlugin.readDurations(file).forEach(durations::putIfAbsent);
+            }
+        }
+        for (Path shard : shards) {
+            for (Path file : find(shard, "timing.json")) {
+                durations.putAll(TimingReportPlugin.readRunDurations(file));
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * @return files in the shard (in any sub folder) whose name starts with the prefix, attempts in the order they ran
+     */
+    private static List<Path> find(Path shard, String prefix) throws IOException {
+        try (Stream<Path> files = Files.walk(shard)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                    .sorted(Comparator.comparingInt(ShardReportMerger::attemptNumber).thenComparing(Path::toString))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int attemptNumber(Path file) {
+        String name = file.getFileName().toString();
+        return name.matches("attempt-\\d+\\.json") ? Integer.parseInt(name.replaceAll("\\D", "")) : 0;
+    }
+
+    /*
+    In cucumber json, the background of a scenario is a separate element right before the scenario.
+    Both are stored under the line of the scenario, so a later attempt replaces the earlier one.
+     */
+    @SuppressWarnings("unchecked")
+    private static void addAttempt(Path attempt, Map<String, Map<String, Object>> features,
+                                   Map<String, Map<Long, List<Object>>> scenarios) throws IOException {
+        String content = Files.readString(attempt);
+        if (content.isBlank()) {
+            return;
+        }
+        List<Map<String, Object>> attemptFeatures = new Json().toType(content, Json.LIST_OF_MAPS_TYPE);
+        for (Map<String, Object> feature : attemptFeatures) {
+            String uri = (String) feature.get("uri");
+            Map<String, Object> header = new LinkedHashMap<>(feature);
+            header.remove("elements");
+            features.putIfAbsent(uri, header);
+            Map<Long, List<Object>> byLine = scenarios.computeIfAbsent(uri, k -> new TreeMap<>());
+
+            List<Object> pending = new ArrayList<>();
+            for (Object element : (List<Object>) feature.getOrDefault("elements", List.of())) {
+                pending.add(element);
+                Map<String, Object> map = (Map<String, Object>) element;
+                if (!"background".equals(map.get("type"))) {
+                    byLine.put(((Number) map.get("line")).longValue(), pending);
+                    pending = new ArrayList<>();
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.cydeo.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.json.Json;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardReportMergerTest {
+
+    private static final String LOGIN = "classpath:features/Login.feature:5";
+    private static final String WIKI = "classpath:features/WikiSearch.feature:5";
+    private static final String ETSY = "classpath:features/EtsySearch.feature:7";
+
+    @TempDir
+    Path shards;
+
+    @Test
+    void freshDurationsOfEveryShardWinOverTheHistoryOfTheOthers() throws IOException {
+        //both nodes started from the same history, and each updated only the scenario it ran
+        Path first = shard("1", Map.of(LOGIN, 900L, WIKI, 100L, ETSY, 300L), LOGIN, 900L);
+        Path second = shard("2", Map.of(LOGIN, 100L, WIKI, 700L, ETSY, 300L), WIKI, 700L);
+
+        Map<String, Long> durations = ShardReportMerger.mergeDurations(List.of(first, second));
+
+        assertEquals(Map.of(LOGIN, 900L, WIKI, 700L, ETSY, 300L), durations);
+    }
+
+    @Test
+    void shardWithoutTimingKeepsTheHistory() throws IOException {
+        Path first = shard("1", Map.of(LOGIN, 100L), null, 0);
+
+        assertEquals(Map.of(LOGIN, 100L), ShardReportMerger.mergeDurations(List.of(first)));
+    }
+
+    //target/cucumber-timing of one node: its durations.json, and the timing.json of the scenario it ran (if any)
+    private Path shard(String name, Map<String, Long> history, String ran, long ranMillis) throws IOException {
+        Path timing = shards.resolve(name).resolve("cucumber-timing");
+        Files.createDirectories(timing);
+        Files.writeString(timing.resolve("durations.json"), new Json().toJson(history), StandardCharsets.UTF_8);
+        if (ran != null) {
+            int colon = ran.lastIndexOf(':');
+            Map<String, Object> scenario = Map.of(
+                    "uri", ran.substring(0, colon),
+                    "line", Integer.parseInt(ran.substring(colon + 1)),
+                    "durationMillis", ranMillis);
+            Files.writeString(timing.resolve("timing.json"), new Json().toJson(Map.of("scenarios", List.of(scenario))),
+                    StandardCharsets.UTF_8);
+        }
+        return shards.resolve(name);
+    }
+
+}
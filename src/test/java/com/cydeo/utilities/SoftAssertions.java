@@ -0,0 +1,49 @@
+package com.cydeo.utilities;
+
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Assertions that do not stop the scenario. The failures are collected, and the scenario fails once at the end
+with all of them (see Hooks), so a scenario outline row shows every wrong value, not only the first one.
+
+The messages are the same as the ones of org.junit.Assert.
+ */
+public class SoftAssertions {
+
+    private SoftAssertions() {}
+
+    private static final ThreadLocal<List<String>> failures = ThreadLocal.withInitial(ArrayList::new);
+
+    public static void assertEquals(String message, Object expected, Object actual) {
+        check(() -> Assert.assertEquals(message, expected, actual));
+    }
+
+    public static void assertTrue(String message, boolean condition) {
+        check(() -> Assert.assertTrue(message, condition));
+    }
+
+    private static void check(Runnable assertion) {
+        try {
+            assertion.run();
+        } catch (AssertionError e) {
+            failures.get().add(e.getMessage());
+        }
+    }
+
+    /**
+     * Fails with all the failures collected in the current scenario, and starts over for the next one.
+     *
+     * @throws AssertionError if any soft assertion failed
+     */
+    public static void assertAll() {
+        List<String> collected = failures.get();
+        failures.remove();
+        if (!collected.isEmpty()) {
+            throw new AssertionError(collected.size() + " soft assertion(s) failed:\n- " + String.join("\n- ", collected));
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Renders the results.ndjson of the StreamingReportPlugin into a single html page.
+
+The file is read line by line, twice: first to count the results for the summary, then to write one row per scenario.
+Only the status of every scenario is kept in memory, never the scenarios themselves.
+A line that is cut in half (the run was killed while writing it) is skipped, so a crashed run still gives a report.
+
+Usage after a crashed run: mvn -Pstream-report process-test-classes
+ */
+public class StreamingReportRenderer {
+
+    private StreamingReportRenderer() {}
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "target/cucumber-stream");
+        render(directory.resolve("results.ndjson"), directory.resolve("report.html"));
+        System.out.println("Rendered " + directory.resolve("report.html"));
+    }
+
+    //status of the first and the last attempt of a scenario
+    private static class Outcome {
+        String first;
+        String last;
+    }
+
+    /**
+     * @param results NDJSON file written by the StreamingReportPlugin
+     * @param report  html file to write
+     */
+    public static void render(Path results, Path report) throws IOException {
+        Map<String, Outcome> outcomes = new HashMap<>();
+        //every attempt (the run and each retry) has its own runStarted line, the last one must be followed by its runFinished
+        Object attempt = null;
+        boolean finished = false;
+        try (BufferedReader reader = Files.newBufferedReader(results, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<String, Object> entry = parse(line);
+                if (entry == null) {
+                    continue;
+                }
+                if ("runStarted".equals(entry.get("type"))) {
+                    attempt = entry.get("attempt");
+                    finished = false;
+                }
+                if ("runFinished".equals(entry.get("type"))) {
+                    finished = attempt != null && attempt.equals(entry.get("attempt"));
+                }
+                if ("scenario".equals(entry.get("type"))) {
+                    Outcome outcome = outcomes.computeIfAbsent(entry.get("uri") + ":" + entry.get("line"), key -> new Outcome());
+                    if (outcome.first == null) {
+                        outcome.first = (String) entry.get("status");
+                    }
+                    outcome.last = (String) entry.get("status");
+                }
+            }
+        }
+
+        int passed = 0;
+        int failed = 0;
+        int flaky = 0;
+        int other = 0;
+        for (Outcome each : outcomes.values()) {
+            if ("PASSED".equals(each.last)) {
+                if ("PASSED".equals(each.first)) {
+                    passed++;
+                } else {
+                    flaky++;
+                }
+            } else if ("FAILED".equals(each.last)) {
+                failed++;
+            } else {
+                other++;
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(results, StandardCharsets.UTF_8);
+             BufferedWriter html = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            html.write("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Cucumber report</title><style>"
+                    + "body{font-family:sans-serif;margin:20px}"
+                    + "details{border-left:6px solid #ccc;margin:4px 0;padding:4px 8px;background:#fafafa}"
+                    + "details.PASSED{border-color:#4caf50}details.FAILED{border-color:#f44336}"
+                    + "details.SKIPPED,details.PENDING,details.UNDEFINED{border-color:#ff9800}"
+                    + ".meta{color:#777;font-size:12px}.error{color:#c62828;white-space:pre-wrap}"
+                    + "table{border-collapse:collapse;margin:6px 0}td{padding:2px 8px;font-size:13px}"
+                    + "</style></head><body>");
+            html.write("<h1>Cucumber report</h1><p>");
+            html.write("Scenarios: " + outcomes.size() + " | passed: " + passed + " | failed: " + failed
+                    + " | flaky: " + flaky + " | skipped/other: " + other);
+            if (!finished) {
+                html.write(" | <b>the run did not finish, the report is partial</b>");
+            }
+            html.write("</p>");
+            html.newLine();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<String, Object> entry = parse(line);
+                if (entry != null && "scenario".equals(entry.get("type"))) {
+                    writeScenario(html, entry);
+                }
+            }
+            html.write("</body></html>");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeScenario(BufferedWriter html, Map<String, Object> scenario) throws IOException {
+        String status = String.valueOf(scenario.get("status"));
+        long attempt = ((Number) scenario.get("attempt")).longValue();
+
+        html.write("<details class=\"" + status + "\"><summary><b>" + status + "</b> " + escape(scenario.get("name"))
+                + " <span class=\"meta\">" + escape(scenario.get("uri")) + ":" + scenario.get("line")
+                + " | " + scenario.get("durationMillis") + " ms"
+                + (attempt > 1 ? " | retry " + (attempt - 1) : "")
+                + " | " + escape(scenario.get("thread")) + "</span></summary>");
+        if (scenario.get("error") != null) {
+            html.write("<div class=\"error\">" + escape(scenario.get("error")) + "</div>");
+        }
+        html.write("<table>");
+        for (Map<String, Object> step : (List<Map<String, Object>>) scenario.getOrDefault("steps", List.of())) {
+            html.write("<tr><td>" + step.get("status") + "</td><td>" + escape(step.get("text")) + "</td><td>"
+                    + step.get("durationMillis") + " ms</td></tr>");
+        }
+        html.write("</table></details>");
+        html.newLine();
+    }
+
+    private static Map<String, Object> parse(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return new Json().toType(line, Json.MAP_TYPE);
+        } catch (JsonException e) {
+            return null;
+        }
+    }
+
+    private static String escape(Object text) {
+        return String.valueOf(text).replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+}
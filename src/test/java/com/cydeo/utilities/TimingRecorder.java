@@ -0,0 +1,83 @@
+package com.cydeo.utilities;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Collects where the time goes inside a step: WebDriver command round trips, explicit waits and fixed sleeps.
+Driver, WaitEngine and BrowserUtils report into it, and the TimingReportPlugin reads it per step.
+Every thread runs one step at a time, so the breakdown of the current step is kept in a ThreadLocal.
+ */
+public class TimingRecorder {
+
+    private TimingRecorder() {}
+
+    /**
+     * Time spent in one step, split by category (in nanoseconds)
+     */
+    public static class Breakdown {
+        public long commandNanos;
+        public long commandCount;
+        public long waitNanos;
+        public long sleepNanos;
+    }
+
+    private static final ThreadLocal<Breakdown> currentStep = new ThreadLocal<>();
+
+    //command name -> {count, total nanos} for the whole run
+    private static final Map<String, LongAdder[]> commandTotals = new ConcurrentHashMap<>();
+
+    public static void startStep() {
+        currentStep.set(new Breakdown());
+    }
+
+    /**
+     * @return breakdown of the step started on this thread (empty if none was started)
+     */
+    public static Breakdown finishStep() {
+        Breakdown breakdown = currentStep.get();
+        currentStep.remove();
+        return breakdown == null ? new Breakdown() : breakdown;
+    }
+
+    public static void recordCommand(String command, long nanos) {
+        LongAdder[] totals = commandTotals.computeIfAbsent(command, key -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        totals[0].increment();
+        totals[1].add(nanos);
+
+        Breakdown breakdown = currentStep.get();
+        if (breakdown != null) {
+            breakdown.commandCount++;
+            breakdown.commandNanos += nanos;
+        }
+    }
+
+    /*
+    Wait time includes the commands polled during the wait, they are recorded in both categories.
+     */
+    public static void recordWait(long nanos) {
+        Breakdown breakdown = currentStep.get();
+        if (breakdown != null) {
+            breakdown.waitNanos += nanos;
+        }
+    }
+
+    public static void recordSleep(long nanos) {
+        Breakdown breakdown = currentStep.get();
+        if (breakdown != null) {
+            breakdown.sleepNanos += nanos;
+        }
+    }
+
+    /**
+     * @return command name -> {count, total nanos}, sorted by command name
+     */
+    public static Map<String, long[]> commandTotals() {
+        Map<String, long[]> result = new TreeMap<>();
+        commandTotals.forEach((command, totals) -> result.put(command, new long[]{totals[0].sum(), totals[1].sum()}));
+        return result;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.cydeo.utilities;
+
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.FluentWait;
+import org.openqa.selenium.support.ui.Sleeper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Function;
+
+/*
+The only place where we wait for something in the browser.
+The driver has zero implicit wait, so every wait is explicit and happens here.
+
+- One FluentWait is cached per thread instead of creating a new WebDriverWait in every method, its timeout is set for every wait
+  (a wait inside an ElementRecovery retry only gets the time left until the deadline of the retry).
+- Polling is adaptive: it starts at 50 ms (most conditions are true almost immediately)
+  and slows down up to 500 ms for conditions that take longer, to avoid flooding the browser with calls.
+ */
+public class WaitEngine {
+
+    private WaitEngine() {}
+
+    private static final Duration FIRST_POLL = Duration.ofMillis(50);
+    private static final Duration MAX_POLL = Duration.ofMillis(500);
+
+    private static final ThreadLocal<AdaptiveSleeper> sleeper = ThreadLocal.withInitial(AdaptiveSleeper::new);
+    private static final ThreadLocal<WebDriver> cachedDriver = new ThreadLocal<>();
+    private static final ThreadLocal<FluentWait<WebDriver>> cachedWait = new ThreadLocal<>();
+
+    /**
+     * @return default timeout for all the waits, "wait.timeoutSeconds" in configuration.properties
+     */
+    public static Duration defaultTimeout() {
+        return ConfigurationReader.getDuration("wait.timeoutSeconds");
+    }
+
+    /**
+     * Waits with the default timeout, see until(Function, Duration)
+     */
+    public static <T> T until(Function<? super WebDriver, T> condition) {
+        return until(condition, defaultTimeout());
+    }
+
+    /**
+     * Waits until the condition returns something other than null or false.
+     * NotFoundException and StaleElementReferenceException thrown by the condition are ignored while waiting.
+     *
+     * @param condition e.g. ExpectedConditions.visibilityOf(element)
+     * @param timeout   maximum time to wait
+     * @return the value returned by the condition
+     * @throws org.openqa.selenium.TimeoutException if the condition is not met in time
+     */
+    public static <T> T until(Function<? super WebDriver, T> condition, Duration timeout) {
+        sleeper.get().reset();
+        long start = System.nanoTime();
+        try {
+            return waitFor(timeout).until(condition);
+        } finally {
+            TimingRecorder.recordWait(System.nanoTime() - start);
+        }
+    }
+
+    private static FluentWait<WebDriver> waitFor(Duration timeout) {
+        WebDriver driver = Driver.getDriver();
+
+        //a thread can get a different browser from the pool in the next scenario
+        if (cachedDriver.get() != driver || cachedWait.get() == null) {
+            cachedWait.set(new FluentWait<>(driver, Clock.systemDefaultZone(), sleeper.get())
+                    .pollingEvery(FIRST_POLL)
+                    .ignoring(NotFoundException.class)
+                    .ignoring(StaleElementReferenceException.class));
+            cachedDriver.set(driver);
+        }
+
+        //the end of the wait is computed when until() starts, so a wait inside the condition does not change it
+        return cachedWait.get().withTimeout(timeout);
+    }
+
+    /*
+    FluentWait calls the sleeper between the attempts.
+    We ignore the fixed polling interval, and increase the interval by 50% after every attempt instead.
+     */
+    private static class AdaptiveSleeper implements Sleeper {
+
+        private Duration next = FIRST_POLL;
+
+        void reset() {
+            next = FIRST_POLL;
+        }
+
+        @Override
+        public void sleep(Duration duration) throws InterruptedException {
+            Thread.sleep(next.toMillis());
+            long increased = next.toMillis() * 3 / 2;
+            next = Duration.ofMillis(Math.min(increased, MAX_POLL.toMillis()));
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+package com.cydeo.utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+
+/*
+In-process stand-in for https://web-table-2.cydeo.com
+It serves login, order and view all orders pages with the same element names and texts
+that WT_LoginPage, WT_OrderPage and WT_ViewAllOrdersPage use, and keeps the orders in memory.
+Every login session ("wt_session" cookie) starts with the same three orders and only sees its own new orders,
+so the parallel scenarios never see each other's orders in the first row.
+Started only once per JVM, see ConfigurationReader.getWebTableUrl()
+ */
+public class WebTableServer {
+
+    private WebTableServer() {}
+
+    private static final String USERNAME = "Test";
+    private static final String PASSWORD = "Tester";
+    private static final String SESSION_COOKIE = "wt_session";
+
+    private static HttpServer server;
+    private static String baseUrl;
+
+    //name, product, quantity, date, street, city, state, zip, card, card number, expiration
+    private static final List<String[]> FIXTURE_ORDERS = List.of(
+            new String[]{"Mark Smith", "MoneyCog", "1", "12/10/2021", "9, Maple Valley", "Whitestone, British", "Columbia", "76540", "Visa", "770077007700", "08/25"},
+            new String[]{"Steve Johns", "Familybea", "2", "12/10/2021", "17, Park Avenue", "Ashville", "NC", "34567", "MasterCard", "4444555566667777", "11/24"},
+            new String[]{"Bob Feather", "Screenable", "3", "12/10/2021", "44, Sunset blvd", "Miami", "FL", "54321", "American Express", "373737373737373", "03/26"});
+
+    //session -> orders of the session, newest first
+    private static final Map<String, List<String[]>> orders = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the server on the first call, and returns its base URL on every call.
+     * Port is read from "webTable.local.port" (0 means any free port).
+     *
+     * @return base URL of the running server, e.g. http://localhost:51234
+     */
+    public static synchronized String start() {
+        if (server != null) {
+            return baseUrl;
+        }
+        try {
+            int port = ConfigurationReader.getInt("webTable.local.port");
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start the local Web Table app", e);
+        }
+        server.createContext("/", WebTableServer::handle);
+        //one virtual thread per request, the browsers of all the parallel scenarios are served at the same time
+        server.setExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("web-table-server-", 0).factory()));
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+        System.out.println("Local Web Table app is running on " + baseUrl);
+        return baseUrl;
+    }
+
+    /**
+     * Stops the server if it is running.
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            baseUrl = null;
+        }
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            if (path.equals("/") || path.equals("/login")) {
+                if (method.equals("POST")) {
+                    login(exchange);
+                } else {
+                    respond(exchange, 200, loginPage(""));
+                }
+                return;
+            }
+
+            //every page below needs a logged in user
+            String session = session(exchange);
+            if (session == null) {
+                redirect(exchange, "/login");
+                return;
+            }
+
+            switch (path) {
+                case "/orders":
+                    respond(exchange, 200, ordersPage(session));
+                    break;
+                case "/products":
+                    respond(exchange, 200, productsPage());
+                    break;
+                case "/order":
+                    if (method.equals("POST")) {
+                        placeOrder(exchange, session);
+                    } else {
+                        respond(exchange, 200, orderPage());
+                    }
+                    break;
+                case "/logout":
+                    orders.remove(session);
+                    exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=; Path=/; Max-Age=0");
+                    redirect(exchange, "/login");
+                    break;
+                default:
+                    respond(exchange, 404, page("Not Found", "<h1>Page not found</h1>"));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void login(HttpExchange exchange) throws IOException {
+        Map<String, String> form = readForm(exchange);
+        if (USERNAME.equals(form.get("username")) && PASSWORD.equals(form.get("password"))) {
+            String session = UUID.randomUUID().toString();
+            orders.put(session, new CopyOnWriteArrayList<>(FIXTURE_ORDERS));
+            exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/");
+            redirect(exchange, "/orders");
+        } else {
+            respond(exchange, 200, loginPage("<p class=\"help is-danger\">Incorrect username or password</p>"));
+        }
+    }
+
+    private static void placeOrder(HttpExchange exchange, String session) throws IOException {
+        Map<String, String> form = readForm(exchange);
+        orders.get(session).add(0, new String[]{
+                form.getOrDefault("name", ""),
+                form.getOrDefault("product", ""),
+                form.getOrDefault("quantity", ""),
+                LocalDate.now().format(DateTimeFormatter.ofPattern("MM/dd/yyyy")),
+                form.getOrDefault("street", ""),
+                form.getOrDefault("city", ""),
+                form.getOrDefault("state", ""),
+                form.getOrDefault("zip", ""),
+                form.getOrDefault("card", ""),
+                form.getOrDefault("cardNo", ""),
+                form.getOrDefault("cardExp", "")});
+        redirect(exchange, "/orders");
+    }
+
+    private static String loginPage(String error) {
+        return page("Web Table - Login",
+                "<form method=\"post\" action=\"/login\">" +
+                "<div class=\"field\"><label class=\"label\">Username</label><input class=\"input\" name=\"username\" type=\"text\"></div>" +
+                "<div class=\"field\"><label class=\"label\">Password</label><input class=\"input\" name=\"password\" type=\"password\"></div>" +
+                error +
+                "<button class=\"button is-dark\" type=\"submit\">Login</button>" +
+                "</form>");
+    }
+
+    private static String navigation() {
+        return "<nav>" +
+                "<button class=\"button\" type=\"button\" onclick=\"location.href='/orders'\">View all orders</button>" +
+                "<button class=\"button\" type=\"button\" onclick=\"location.href='/products'\">View all products</button>" +
+                "<button class=\"button\" type=\"button\" onclick=\"location.href='/order'\">Order</button>" +
+                "<button class=\"button\" type=\"button\" onclick=\"location.href='/logout'\">Logout</button>" +
+                "</nav>";
+    }
+
+    private static String ordersPage(String session) {
+        StringBuilder rows = new StringBuilder();
+        for (String[] order : orders.get(session)) {
+            rows.append("<tr>");
+            for (String cell : order) {
+                rows.append("<td>").append(escape(cell)).append("</td>");
+            }
+            rows.append("</tr>");
+        }
+        return page("Web Table - Orders", navigation() +
+                "<table class=\"table is-fullwidth\">" +
+                "<thead><tr><th>Name</th><th>Product</th><th>#</th><th>Date</th><th>Street</th><th>City</th>" +
+                "<th>State</th><th>Zip</th><th>Card</th><th>Card Number</th><th>Exp</th></tr></thead>" +
+                "<tbody>" + rows + "</tbody>" +
+                "</table>");
+    }
+
+    private static String productsPage() {
+        return page("Web Table - Products", navigation() +
+                "<table class=\"table is-fullwidth\">" +
+                "<thead><tr><th>Product</th><th>Price</th><th>Discount</th></tr></thead>" +
+                "<tbody>" +
+                "<tr><td>MoneyCog</td><td>$100</td><td>8%</td></tr>" +
+                "<tr><td>Familybea</td><td>$80</td><td>15%</td></tr>" +
+                "<tr><td>Screenable</td><td>$20</td><td>10%</td></tr>" +
+                "</tbody></table>");
+    }
+
+    private static String orderPage() {
+        return page("Web Table - Order", navigation() +
+                "<form method=\"post\" action=\"/order\">" +
+                "<select class=\"select\" name=\"product\">" +
+                "<option value=\"MoneyCog\" data-price=\"100\" data-discount=\"8\">MoneyCog</option>" +
+                "<option value=\"Familybea\" data-price=\"80\" data-discount=\"15\">Familybea</option>" +
+                "<option value=\"Screenable\" data-price=\"20\" data-discount=\"10\">Screenable</option>" +
+                "</select>" +
+                "<input class=\"input\" name=\"quantity\" type=\"number\" value=\"1\">" +
+                "<button class=\"button\" type=\"button\" onclick=\"calculate()\">Calculate</button>" +
+                "<p>Total: <span id=\"total\">0</span></p>" +
+                "<input class=\"input\" name=\"name\" type=\"text\">" +
+                "<input class=\"input\" name=\"street\" type=\"text\">" +
+                "<input class=\"input\" name=\"city\" type=\"text\">" +
+                "<input class=\"input\" name=\"state\" type=\"text\">" +
+                "<input class=\"input\" name=\"zip\" type=\"text\">" +
+                "<label><input type=\"radio\" name=\"card\" value=\"Visa\"> Visa</label>" +
+                "<label><input type=\"radio\" name=\"card\" value=\"MasterCard\"> MasterCard</label>" +
+                "<label><input type=\"radio\" name=\"card\" value=\"American Express\"> American Express</label>" +
+                "<input class=\"input\" name=\"cardNo\" type=\"text\">" +
+                "<input class=\"input\" name=\"cardExp\" type=\"text\">" +
+                "<button class=\"button is-dark\" type=\"submit\">Process Order</button>" +
+                "</form>" +
+                "<script>" +
+                "function calculate() {" +
+                "  var option = document.querySelector('select[name=product]').selectedOptions[0];" +
+                "  var quantity = Number(document.querySelector('input[name=quantity]').value);" +
+                "  var total = option.dataset.price * quantity * (100 - option.dataset.discount) / 100;" +
+                "  document.getElementById('total').textContent = total;" +
+                "}" +
+                "</script>");
+    }
+
+    private static String page(String title, String body) {
+        return "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>" + title + "</title></head>" +
+                "<body>" + body + "</body></html>";
+    }
+
+    private static String session(HttpExchange exchange) {
+        List<String> cookies = exchange.getRequestHeaders().getOrDefault("Cookie", new ArrayList<>());
+        for (String header : cookies) {
+            for (String cookie : header.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].equals(SESSION_COOKIE) && orders.containsKey(pair[1])) {
+                    return pair[1];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> readForm(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length == 2) {
+                form.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                        URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        exchange.sendResponseHeaders(302, -1);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String html) throws IOException {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+}
@@ -1,3 +1,4 @@
+@ui
 Feature: Bing search functionality
   Agile story: As a user, when I am on the Bing search page
   I should be able to search anything and see relevant results
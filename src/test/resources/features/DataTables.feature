@@ -36,7 +36,7 @@ Feature: Cucumber Data Tables implementation practices
       | zipcode | 99999         |
       | phone   | 111-1111-1111 |
 
-  @dataTable
+  @dataTable @ui
   Scenario: User should be able to see all 12 months in months
   dropdown
     Given User is on the dropdowns page of practice tool
@@ -1,6 +1,6 @@
 
 
-@regression @login @ui
+@regression @login
 Feature: Library login feature
 
   User Story:
@@ -37,16 +37,17 @@ Feature: Some of the general functionality verifications
   Scenario Outline: Order placement scenario
     Given user is already logged in to The Web table app
     When user is on the Order page
-    And user enters quantity "<quantity>"
+    And user fills the order form
+      | quantity | <quantity>     |
+      | name     | <customerName> |
+      | street   | <street>       |
+      | city     | <city>         |
+      | state    | <state>        |
+      | zip      | <zip>          |
+      | card     | <paymentType>  |
+      | cardNo   | <cardNumber>   |
+      | cardExp  | <expDate>      |
     Then user clicks to the calculate button
-    And user enters customer name "<customerName>"
-    And user enters street "<street>"
-    And user enters city "<city>"
-    And user enters state "<state>"
-    And user enters zip "<zip>"
-    And user selects payment option "<paymentType>"
-    And user enters credit card number "<cardNumber>"
-    And user enters expiration date "<expDate>"
     And user clicks to process order button
     Then user should see "<expectedName>" in the first row of the web table
 
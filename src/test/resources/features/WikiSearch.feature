@@ -1,4 +1,4 @@
-@wiki
+@wiki @ui
 Feature: Wiki search features
   WPS-7531
 
@@ -6,18 +6,21 @@ Feature: Wiki search features
     Given User is on Wikipedia home page
     When User types "Steve Jobs" in the wiki search box
     And User clicks wiki search button
+    And User captures the wiki result page
     Then User sees "Steve Jobs" is in the wiki title
 
   Scenario: Wikipedia Search Functionality Header Verification
     Given User is on Wikipedia home page
     When User types "Steve Jobs" in the wiki search box
     And User clicks wiki search button
+    And User captures the wiki result page with "mainHeader"
     Then User sees "Steve Jobs" is in the main header
 
   Scenario: Wikipedia Search Functionality Image Header Verification
     Given User is on Wikipedia home page
     When User types "Steve Jobs" in the wiki search box
     And User clicks wiki search button
+    And User captures the wiki result page with "imageHeader"
     Then User sees "Steve Jobs" is in the image header
 
   @scenarioOutline
@@ -25,6 +28,7 @@ Feature: Wiki search features
     Given User is on Wikipedia home page
     When User types "<searchValue>" in the wiki search box
     And User clicks wiki search button
+    And User captures the wiki result page with "mainHeader, imageHeader"
     Then User sees "<expectedTitle>" is in the wiki title
     Then User sees "<expectedMainHeader>" is in the main header
     Then User sees "<expectedImageHeader>" is in the image header